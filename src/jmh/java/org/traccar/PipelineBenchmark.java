@@ -0,0 +1,103 @@
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.helper.DataConverter;
+import org.traccar.model.Device;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Full handler chain from {@link BasePipelineFactory} for a Teltonika TCP connection, including filtering, event
+ * handlers and storage into an in-memory H2 database. Must be started from the project directory, because default
+ * configuration and database schema are loaded from "setup" and "schema" folders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final String PROTOCOL = "teltonika";
+    private static final String UNIQUE_ID = "123456789012345";
+
+    private File configFile;
+    private EmbeddedChannel channel;
+    private ByteBuf message;
+
+    @Setup
+    public void setup() throws Exception {
+        java.util.logging.Logger.getLogger("").setLevel(Level.WARNING);
+
+        configFile = File.createTempFile("benchmark", ".xml");
+        try (Writer writer = new FileWriter(configFile)) {
+            writer.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+            writer.write("<!DOCTYPE properties SYSTEM 'http://java.sun.com/dtd/properties.dtd'>\n");
+            writer.write("<properties>\n");
+            writer.write("<entry key='config.default'>./setup/default.xml</entry>\n");
+            writer.write("<entry key='web.enable'>false</entry>\n");
+            writer.write("<entry key='logger.enable'>false</entry>\n");
+            writer.write("<entry key='database.driver'>org.h2.Driver</entry>\n");
+            writer.write("<entry key='database.url'>jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1</entry>\n");
+            writer.write("<entry key='database.user'>sa</entry>\n");
+            writer.write("<entry key='database.password'></entry>\n");
+            writer.write("<entry key='" + PROTOCOL + ".port'>5027</entry>\n");
+            writer.write("</properties>\n");
+        }
+
+        Main.init(configFile.getPath());
+
+        Device device = new Device();
+        device.setName("benchmark");
+        device.setUniqueId(UNIQUE_ID);
+        Context.getDeviceManager().addItem(device);
+
+        TrackerServer server = Context.getServerManager().getProtocol(PROTOCOL).getServerList().iterator().next();
+        channel = new EmbeddedChannel(new BasePipelineFactory(server, PROTOCOL) {
+            @Override
+            protected void addProtocolHandlers(PipelineBuilder pipeline) {
+                server.addProtocolHandlers(pipeline);
+            }
+        });
+
+        channel.writeInbound(Unpooled.wrappedBuffer(DataConverter.parseHex(
+                "000F313233343536373839303132333435")));
+        channel.releaseOutbound();
+
+        message = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(DataConverter.parseHex(
+                "000000000000002b080100000140d4e3ec6e000cc661d01674a5e0fffc00000900000004020100f0"
+                + "000242322318000000000100007a04")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        configFile.delete();
+    }
+
+    @Benchmark
+    public void process() {
+        channel.writeInbound(message.duplicate());
+        channel.releaseInbound();
+        channel.releaseOutbound();
+    }
+
+}
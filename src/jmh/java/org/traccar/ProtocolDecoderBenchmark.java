@@ -0,0 +1,96 @@
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.protocol.Gl200TextProtocolDecoder;
+import org.traccar.protocol.Gt06ProtocolDecoder;
+import org.traccar.protocol.H02ProtocolDecoder;
+import org.traccar.protocol.TeltonikaProtocolDecoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput of individual protocol decoders using sample messages from decoder tests. Each invocation
+ * decodes one message, cycling through the samples. Run with "-prof gc" to see allocation rate per message.
+ * <p>
+ * Benchmarks are started with "./gradlew jmh" or "mvn -P benchmark test-compile exec:exec", optionally passing JMH
+ * arguments like "-Dbenchmark='ProtocolDecoderBenchmark -prof gc'".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolDecoderBenchmark extends ProtocolTest {
+
+    @Param({"gt06", "gl200", "teltonika", "h02"})
+    public String protocol;
+
+    private BaseProtocolDecoder decoder;
+    private ByteBuf[] messages;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (protocol) {
+            case "gt06":
+                decoder = new Gt06ProtocolDecoder(null);
+                decoder.decode(null, null, binary(
+                        "78780D01086471700328358100093F040D0A"));
+                messages = new ByteBuf[] {
+                        binary("7878252612030C063816C3026C10540C38C9700144030901CC002866000EEE0C06040302000DA2DB0D0A"),
+                        binary("7878353714080d05000ac500a886eb0b7522f000100001fe0a05ea004f1b000001002e0400002328"
+                                + "003b0217c0003c0401020001002c468a0d0a")};
+                break;
+            case "gl200":
+                decoder = new Gl200TextProtocolDecoder(null);
+                messages = new ByteBuf[] {
+                        buffer("+RESP:GTFRI,DE0114,865284042140479,,0,0,1,1,0.0,0,28.0,-118.268093,33.975430,"
+                                + "20200901105954,0311,0480,3500,00D07F02,18,0,,93,0,,,20200901110000,0355$"),
+                        buffer("+RESP:GTERI,DE0115,865284042104863,gl500m,00000100,0,0,1,2,0.0,0,36.9,-1.844589,"
+                                + "52.177779,20201006125701,0234,0015,0135,34A1,19,0,,79,1,,0,20201006125723,184D$")};
+                break;
+            case "teltonika":
+                decoder = new TeltonikaProtocolDecoder(null, false);
+                decoder.decode(null, null, binary(
+                        "000F313233343536373839303132333435"));
+                messages = new ByteBuf[] {
+                        binary("000000000000002b080100000140d4e3ec6e000cc661d01674a5e0fffc00000900000004020100f0"
+                                + "000242322318000000000100007a04"),
+                        binary("00000000000000858e0200000174431aadc100061d888f21000e8a0032002e0c00000181000100"
+                                + "0000000000000000010181001711210102030405060708090a0b0c0d0e0f10020b010ad0000001"
+                                + "74431a389100061d888f21000e8a0033002e0d0000018100010000000000000000000101810017"
+                                + "11210102030405060708090a0b0c0d0e0f10020b010ad2020000492b")};
+                break;
+            case "h02":
+                decoder = new H02ProtocolDecoder(null);
+                messages = new ByteBuf[] {
+                        buffer("*HQ,9180271064,V5,091233,V,2348.8912,N,09021.3302,E,000.00,000,051219,FFFFBBFF,"
+                                + "470,01,21019,2033,2921283#"),
+                        binary("2491802711800850240512192350143206090249758e000001ffffbbff00bdf0900000000001d6"
+                                + "0161cc4b9a35")};
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown protocol " + protocol);
+        }
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        ByteBuf message = messages[index];
+        index = (index + 1) % messages.length;
+        return decoder.decode(null, null, message.duplicate());
+    }
+
+}
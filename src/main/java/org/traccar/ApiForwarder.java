@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends requests to the external position API from a fixed set of background threads. Network threads only put
+ * requests into a bounded queue, so a slow or unavailable endpoint can't delay decoding of other devices. Requests
+ * that don't fit into the queue are dropped and counted.
+ */
+public class ApiForwarder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApiForwarder.class);
+
+    public interface ResultHandler {
+        void onResult(boolean success);
+    }
+
+    private static final class Request {
+
+        private final String url;
+        private final ResultHandler resultHandler;
+
+        private Request(String url, ResultHandler resultHandler) {
+            this.url = url;
+            this.resultHandler = resultHandler;
+        }
+
+    }
+
+    private final String url;
+    private final int batchSize;
+    private final Client client;
+    private final BlockingQueue<Request> queue;
+
+    private final AtomicBoolean overflow = new AtomicBoolean();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ApiForwarder(Config config) {
+        url = config.getString(Keys.OUTPUT_API);
+        batchSize = config.getInteger(Keys.OUTPUT_API_BATCH_SIZE, 100);
+        queue = new ArrayBlockingQueue<>(config.getInteger(Keys.OUTPUT_API_QUEUE_SIZE, 10000));
+
+        int timeout = config.getInteger(Keys.OUTPUT_API_TIMEOUT, 5000);
+        client = ClientBuilder.newBuilder()
+                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                .build();
+
+        int concurrency = config.getInteger(Keys.OUTPUT_API_CONCURRENCY, 4);
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(this::process);
+            thread.setName("ApiForwarder-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Queue request for the given path relative to the configured API URL. Result handler is called from a
+     * forwarding thread once the request completes. If the request is dropped because the queue is full, the handler
+     * is called immediately from the calling thread with unsuccessful result and false is returned.
+     */
+    public boolean forward(String path, ResultHandler resultHandler) {
+        if (queue.offer(new Request(url + path, resultHandler))) {
+            if (overflow.compareAndSet(true, false)) {
+                LOGGER.info("Api forwarding queue recovered, {} requests dropped so far", dropped.get());
+            }
+            return true;
+        } else {
+            dropped.incrementAndGet();
+            if (overflow.compareAndSet(false, true)) {
+                LOGGER.warn("Api forwarding queue is full, dropping requests");
+            }
+            notify(resultHandler, false);
+            return false;
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void process() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            for (Request request : batch) {
+                send(request);
+            }
+            batch.clear();
+        }
+    }
+
+    private void send(Request request) {
+        boolean success = false;
+        try {
+            Response response = client.target(request.url).request().get();
+            try {
+                success = response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+                if (response.hasEntity()) {
+                    response.readEntity(String.class); // consume body to keep connection alive
+                }
+            } finally {
+                response.close();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("Api forwarding error", e);
+        }
+
+        if (success) {
+            forwarded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+
+        notify(request.resultHandler, success);
+    }
+
+    private static void notify(ResultHandler resultHandler, boolean success) {
+        if (resultHandler != null) {
+            try {
+                resultHandler.onResult(success);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Api forwarding result handler error", e);
+            }
+        }
+    }
+
+}
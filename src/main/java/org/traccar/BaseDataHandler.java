@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,10 +17,16 @@ package org.traccar;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.database.IdentityManager;
 import org.traccar.model.Position;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public abstract class BaseDataHandler extends ChannelInboundHandlerAdapter {
 
+    private static final ThreadLocal<Position> BATCH_LAST_POSITION = new ThreadLocal<>();
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof Position) {
@@ -28,11 +34,54 @@ public abstract class BaseDataHandler extends ChannelInboundHandlerAdapter {
             if (position != null) {
                 ctx.fireChannelRead(position);
             }
+        } else if (msg instanceof PositionBatch) {
+            PositionBatch batch = handleBatch((PositionBatch) msg);
+            if (batch != null) {
+                ctx.fireChannelRead(batch);
+            }
         } else {
             super.channelRead(ctx, msg);
         }
     }
 
+    /**
+     * Handles batch positions one by one. While a position is handled, {@link #getLastPosition} returns the previous
+     * position of the batch if it would have become the latest one, same as if positions were processed separately.
+     *
+     * @return batch with positions that were not filtered out or null if there are none
+     */
+    protected PositionBatch handleBatch(PositionBatch batch) {
+        List<Position> result = new ArrayList<>(batch.getPositions().size());
+        Position latest = null;
+        try {
+            for (Position position : batch.getPositions()) {
+                BATCH_LAST_POSITION.set(latest);
+                Position handled = handlePosition(position);
+                if (handled != null) {
+                    result.add(handled);
+                    Position last = getLastPosition(Context.getIdentityManager(), handled.getDeviceId());
+                    if (last == null || handled.getFixTime().compareTo(last.getFixTime()) >= 0) {
+                        latest = handled;
+                    }
+                }
+            }
+        } finally {
+            BATCH_LAST_POSITION.remove();
+        }
+        if (result.isEmpty()) {
+            return null;
+        }
+        return result.size() == batch.getPositions().size() ? batch : new PositionBatch(result);
+    }
+
+    protected Position getLastPosition(IdentityManager identityManager, long deviceId) {
+        Position last = BATCH_LAST_POSITION.get();
+        if (last != null && last.getDeviceId() == deviceId) {
+            return last;
+        }
+        return identityManager != null ? identityManager.getLastPosition(deviceId) : null;
+    }
+
     protected abstract Position handlePosition(Position position);
 
 }
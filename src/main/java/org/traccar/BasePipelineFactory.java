@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,9 +21,14 @@ import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutorGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.config.ConfigKey;
 import org.traccar.config.Keys;
 import org.traccar.handler.DefaultDataHandler;
 import org.traccar.handler.SpeedLimitHandler;
@@ -37,6 +42,7 @@ import org.traccar.handler.events.IgnitionEventHandler;
 import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
+import org.traccar.handler.BacklogHandler;
 import org.traccar.handler.ComputedAttributesHandler;
 import org.traccar.handler.CopyAttributesHandler;
 import org.traccar.handler.DistanceHandler;
@@ -48,41 +54,177 @@ import org.traccar.handler.HemisphereHandler;
 import org.traccar.handler.MotionHandler;
 import org.traccar.handler.NetworkMessageHandler;
 import org.traccar.handler.OpenChannelHandler;
+import org.traccar.handler.ProcessingDispatchHandler;
+import org.traccar.handler.RateLimitHandler;
 import org.traccar.handler.RemoteAddressHandler;
 import org.traccar.handler.StandardLoggingHandler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BasePipelineFactory.class);
 
+    private static final AttributeKey<Boolean> HTTP = AttributeKey.valueOf("http");
+
     private final TrackerServer server;
     private final String protocol;
-    private final boolean eventsEnabled;
+    private final ProcessingExecutor processingGroup;
+    private final ProcessingDispatchHandler processingDispatchHandler;
+    private final boolean logTraffic;
+    private final Set<String> logDevices;
+    private final int logSample;
     private int timeout;
 
+    private final OpenChannelHandler openChannelHandler;
+    private final NetworkMessageHandler networkMessageHandler;
+    private final int flushConsolidation;
+    private final RateLimitHandler rateLimitHandler;
+    private final List<Class<?>> dynamicHandlerClasses = new ArrayList<>();
+
     public BasePipelineFactory(TrackerServer server, String protocol) {
         this.server = server;
         this.protocol = protocol;
-        eventsEnabled = Context.getConfig().getBoolean(Keys.EVENT_ENABLE);
+        openChannelHandler = new OpenChannelHandler(server);
+        ConfigKey dropUnwritableKey = Keys.PROTOCOL_DROP_UNWRITABLE.withPrefix(protocol);
+        networkMessageHandler = new NetworkMessageHandler(Context.getConfig().hasKey(dropUnwritableKey)
+                ? Context.getConfig().getBoolean(dropUnwritableKey)
+                : Context.getConfig().getBoolean(Keys.SERVER_DROP_UNWRITABLE));
+        flushConsolidation = Context.getConfig().getInteger(Keys.SERVER_FLUSH_CONSOLIDATION);
+        double rateLimit = Context.getConfig().getDouble(Keys.PROTOCOL_RATE_LIMIT.withPrefix(protocol));
+        if (rateLimit == 0) {
+            rateLimit = Context.getConfig().getDouble(Keys.SERVER_RATE_LIMIT);
+        }
+        if (rateLimit > 0) {
+            rateLimitHandler = new RateLimitHandler(
+                    rateLimit,
+                    Context.getConfig().getInteger(Keys.SERVER_RATE_BURST, (int) Math.ceil(rateLimit)),
+                    Context.getConfig().getBoolean(Keys.SERVER_RATE_CLOSE));
+        } else {
+            rateLimitHandler = null;
+        }
+        processingGroup = EventLoopGroupFactory.getProcessingGroup();
+        processingDispatchHandler = processingGroup != null ? new ProcessingDispatchHandler(processingGroup) : null;
+        String logProtocols = Context.getConfig().getString(Keys.LOGGER_TRAFFIC_PROTOCOLS);
+        logTraffic = logProtocols == null || Arrays.asList(logProtocols.split("[, ]")).contains(protocol);
+        String devices = Context.getConfig().getString(Keys.LOGGER_TRAFFIC_DEVICES);
+        logDevices = devices != null ? new HashSet<>(Arrays.asList(devices.split("[, ]"))) : null;
+        logSample = Context.getConfig().getInteger(Keys.LOGGER_TRAFFIC_SAMPLE, 1);
         timeout = Context.getConfig().getInteger(Keys.PROTOCOL_TIMEOUT.withPrefix(protocol));
         if (timeout == 0) {
             timeout = Context.getConfig().getInteger(Keys.SERVER_TIMEOUT);
         }
+        String handlers = Context.getConfig().getString(Keys.EXTRA_HANDLERS);
+        if (handlers != null) {
+            for (String handler : handlers.split(",")) {
+                try {
+                    dynamicHandlerClasses.add(Class.forName(handler));
+                } catch (ClassNotFoundException error) {
+                    LOGGER.warn("Dynamic handler error", error);
+                }
+            }
+        }
     }
 
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
 
+    public RateLimitHandler getRateLimitHandler() {
+        return rateLimitHandler;
+    }
+
+    private static final class HandlerTemplate {
+
+        private final ChannelHandler[] positionHandlers;
+        private final ChannelHandler[] dataHandlers;
+
+        private HandlerTemplate(ChannelHandler[] positionHandlers, ChannelHandler[] dataHandlers) {
+            this.positionHandlers = positionHandlers;
+            this.dataHandlers = dataHandlers;
+        }
+
+    }
+
+    private static volatile HandlerTemplate handlerTemplate;
+
     @SafeVarargs
-    private final void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelHandler>... handlerClasses) {
-        for (Class<? extends ChannelHandler> handlerClass : handlerClasses) {
-            if (handlerClass != null) {
-                pipeline.addLast(Main.getInjector().getInstance(handlerClass));
+    private static void resolveHandlers(List<ChannelHandler> handlers, Class<? extends ChannelHandler>... classes) {
+        for (Class<? extends ChannelHandler> handlerClass : classes) {
+            ChannelHandler handler = Main.getInjector().getInstance(handlerClass);
+            if (handler != null) {
+                handlers.add(handler);
             }
         }
     }
 
+    /**
+     * Resolves processing handlers shared by all pipelines. They are sharable singletons, so the chain is built once
+     * when servers start, because the injector doesn't exist yet when pipeline factories are created.
+     */
+    public static synchronized void resolveHandlers() {
+        if (handlerTemplate != null) {
+            return;
+        }
+
+        List<ChannelHandler> handlers = new ArrayList<>();
+        resolveHandlers(
+                handlers,
+                TimeHandler.class,
+                BacklogHandler.class,
+                GeolocationHandler.class,
+                HemisphereHandler.class,
+                DistanceHandler.class,
+                RemoteAddressHandler.class);
+        ChannelHandler[] positionHandlers = handlers.toArray(new ChannelHandler[0]);
+
+        handlers.clear();
+        resolveHandlers(
+                handlers,
+                FilterHandler.class,
+                GeocoderHandler.class,
+                SpeedLimitHandler.class,
+                MotionHandler.class,
+                CopyAttributesHandler.class,
+                EngineHoursHandler.class,
+                ComputedAttributesHandler.class,
+                WebDataHandler.class,
+                DefaultDataHandler.class);
+        if (Context.getConfig().getBoolean(Keys.EVENT_ENABLE)) {
+            resolveHandlers(
+                    handlers,
+                    CommandResultEventHandler.class,
+                    OverspeedEventHandler.class,
+                    FuelDropEventHandler.class,
+                    MotionEventHandler.class,
+                    GeofenceEventHandler.class,
+                    AlertEventHandler.class,
+                    IgnitionEventHandler.class,
+                    MaintenanceEventHandler.class,
+                    DriverEventHandler.class);
+        }
+        handlers.add(new MainEventHandler());
+
+        handlerTemplate = new HandlerTemplate(positionHandlers, handlers.toArray(new ChannelHandler[0]));
+    }
+
+    private void addHandlers(ChannelPipeline pipeline, EventExecutorGroup executor, ChannelHandler[] handlers) {
+        for (ChannelHandler handler : handlers) {
+            pipeline.addLast(executor, handler);
+        }
+    }
+
+    /**
+     * Checks whether protocol handlers of the channel decode HTTP requests. Determined once when the pipeline is built,
+     * so it can be checked for every message without scanning the pipeline.
+     */
+    public static boolean isHttp(Channel channel) {
+        return channel.hasAttr(HTTP);
+    }
+
     public static <T extends ChannelHandler> T getHandler(ChannelPipeline pipeline, Class<T> clazz) {
         for (Map.Entry<String, ChannelHandler> handlerEntry : pipeline) {
             ChannelHandler handler = handlerEntry.getValue();
@@ -105,11 +247,22 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
         if (timeout > 0 && !server.isDatagram()) {
             pipeline.addLast(new IdleStateHandler(timeout, 0, 0));
         }
-        pipeline.addLast(new OpenChannelHandler(server));
-        pipeline.addLast(new NetworkMessageHandler());
-        pipeline.addLast(new StandardLoggingHandler(protocol));
+        if (flushConsolidation > 0) {
+            pipeline.addLast(new FlushConsolidationHandler(flushConsolidation));
+        }
+        pipeline.addLast(openChannelHandler);
+        if (rateLimitHandler != null) {
+            pipeline.addLast(rateLimitHandler);
+        }
+        pipeline.addLast(networkMessageHandler);
+        if (logTraffic) {
+            pipeline.addLast(new StandardLoggingHandler(protocol, logDevices, logSample));
+        }
 
         addProtocolHandlers(handler -> {
+            if (handler instanceof HttpRequestDecoder) {
+                channel.attr(HTTP).set(true);
+            }
             if (!(handler instanceof BaseProtocolDecoder || handler instanceof BaseProtocolEncoder)) {
                 if (handler instanceof ChannelInboundHandler) {
                     handler = new WrapperInboundHandler((ChannelInboundHandler) handler);
@@ -120,54 +273,28 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
             pipeline.addLast(handler);
         });
 
-        addHandlers(
-                pipeline,
-                TimeHandler.class,
-                GeolocationHandler.class,
-                HemisphereHandler.class,
-                DistanceHandler.class,
-                RemoteAddressHandler.class);
-
-        addDynamicHandlers(pipeline);
-
-        addHandlers(
-                pipeline,
-                FilterHandler.class,
-                GeocoderHandler.class,
-                SpeedLimitHandler.class,
-                MotionHandler.class,
-                CopyAttributesHandler.class,
-                EngineHoursHandler.class,
-                ComputedAttributesHandler.class,
-                WebDataHandler.class,
-                DefaultDataHandler.class);
-
-        if (eventsEnabled) {
-            addHandlers(
-                    pipeline,
-                    CommandResultEventHandler.class,
-                    OverspeedEventHandler.class,
-                    FuelDropEventHandler.class,
-                    MotionEventHandler.class,
-                    GeofenceEventHandler.class,
-                    AlertEventHandler.class,
-                    IgnitionEventHandler.class,
-                    MaintenanceEventHandler.class,
-                    DriverEventHandler.class);
+        if (handlerTemplate == null) {
+            resolveHandlers();
         }
-
-        pipeline.addLast(new MainEventHandler());
+        HandlerTemplate template = handlerTemplate;
+        EventExecutorGroup executor = null;
+        EventExecutorGroup serialExecutor = null;
+        if (processingDispatchHandler != null) {
+            pipeline.addLast(processingDispatchHandler);
+            executor = processingGroup.channelExecutor(channel);
+            serialExecutor = processingGroup.serialExecutor(channel);
+        }
+        addHandlers(pipeline, executor, template.positionHandlers);
+        addDynamicHandlers(pipeline, serialExecutor); // instances are per channel, so they need one thread
+        addHandlers(pipeline, executor, template.dataHandlers);
     }
 
-    private void addDynamicHandlers(ChannelPipeline pipeline) {
-        String handlers = Context.getConfig().getString(Keys.EXTRA_HANDLERS);
-        if (handlers != null) {
-            for (String handler : handlers.split(",")) {
-                try {
-                    pipeline.addLast((ChannelHandler) Class.forName(handler).getDeclaredConstructor().newInstance());
-                } catch (ReflectiveOperationException error) {
-                    LOGGER.warn("Dynamic handler error", error);
-                }
+    private void addDynamicHandlers(ChannelPipeline pipeline, EventExecutorGroup executor) {
+        for (Class<?> handlerClass : dynamicHandlerClasses) {
+            try {
+                pipeline.addLast(executor, (ChannelHandler) handlerClass.getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException error) {
+                LOGGER.warn("Dynamic handler error", error);
             }
         }
     }
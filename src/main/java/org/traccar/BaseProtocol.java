@@ -18,7 +18,11 @@ package org.traccar;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 import io.netty.handler.codec.string.StringEncoder;
+import org.traccar.config.DecoderConfig;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
 import org.traccar.helper.DataConverter;
 import org.traccar.model.Command;
 
@@ -28,7 +32,10 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public abstract class BaseProtocol implements Protocol {
 
@@ -36,6 +43,14 @@ public abstract class BaseProtocol implements Protocol {
     private final Set<String> supportedDataCommands = new HashSet<>();
     private final Set<String> supportedTextCommands = new HashSet<>();
     private final List<TrackerServer> serverList = new LinkedList<>();
+    private final DeviceSessionCache addressDeviceSessions;
+    private final DecoderConfig decoderConfig;
+
+    private volatile boolean servicesResolved;
+    private StatisticsManager statisticsManager;
+    private CaptureWriter captureWriter;
+
+    private final Map<Class<?>, ChannelHandler> sharedHandlers = new ConcurrentHashMap<>();
 
     private StringProtocolEncoder textCommandEncoder = null;
 
@@ -46,6 +61,10 @@ public abstract class BaseProtocol implements Protocol {
 
     public BaseProtocol() {
         name = nameFromClass(getClass());
+        addressDeviceSessions = new DeviceSessionCache(
+                Context.getConfig().getInteger(Keys.DECODER_SESSION_CACHE_SIZE, 100000),
+                Context.getConfig().getLong(Keys.DECODER_SESSION_TIMEOUT, 86400) * 1000);
+        decoderConfig = new DecoderConfig(Context.getConfig(), name);
     }
 
     @Override
@@ -62,6 +81,57 @@ public abstract class BaseProtocol implements Protocol {
         return serverList;
     }
 
+    /**
+     * Sessions of connectionless devices by remote address. Shared by decoders of all datagram channels of the
+     * protocol, so the session is found regardless of which socket received the packet.
+     */
+    @Override
+    public DeviceSessionCache getAddressDeviceSessions() {
+        return addressDeviceSessions;
+    }
+
+    @Override
+    public DecoderConfig getDecoderConfig() {
+        return decoderConfig;
+    }
+
+    /**
+     * Protocols are created before the injector, so shared services are looked up when the first decoder is created
+     * instead of once for every connection.
+     */
+    private void resolveServices() {
+        if (!servicesResolved) {
+            synchronized (this) {
+                if (!servicesResolved && Main.getInjector() != null) {
+                    statisticsManager = Main.getInjector().getInstance(StatisticsManager.class);
+                    captureWriter = Main.getInjector().getInstance(CaptureWriter.class);
+                    servicesResolved = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public StatisticsManager getStatisticsManager() {
+        resolveServices();
+        return statisticsManager;
+    }
+
+    @Override
+    public CaptureWriter getCaptureWriter() {
+        resolveServices();
+        return captureWriter;
+    }
+
+    /**
+     * Returns a handler instance used by all channels of the protocol. Only for handlers marked sharable, which keep
+     * per-connection state in channel attributes. Created on the first connection, because decoders need services
+     * that don't exist yet when protocols are created.
+     */
+    protected <T extends ChannelHandler> T getSharedHandler(Class<T> clazz, Supplier<T> supplier) {
+        return (T) sharedHandlers.computeIfAbsent(clazz, key -> supplier.get());
+    }
+
     public void setSupportedDataCommands(String... commands) {
         supportedDataCommands.addAll(Arrays.asList(commands));
     }
@@ -17,10 +17,10 @@ package org.traccar;
 
 import io.netty.channel.Channel;
 import io.netty.channel.socket.DatagramChannel;
-import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.traccar.config.Config;
+import org.traccar.config.DecoderConfig;
 import org.traccar.database.CommandsManager;
 import org.traccar.database.ConnectionManager;
 import org.traccar.database.IdentityManager;
@@ -46,15 +46,32 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
 
     private static final String PROTOCOL_UNKNOWN = "unknown";
 
-    private final Config config = Context.getConfig();
+    private static final AttributeKey<DeviceSession> DEVICE_SESSION = AttributeKey.valueOf("deviceSession");
+
     private final IdentityManager identityManager = Context.getIdentityManager();
     private final ConnectionManager connectionManager = Context.getConnectionManager();
     private final StatisticsManager statisticsManager;
     private final Protocol protocol;
+    private final DeviceSessionCache addressDeviceSessions; // connectionless protocols
+    private final DecoderConfig decoderConfig;
 
     public BaseProtocolDecoder(Protocol protocol) {
+        this(protocol, protocol != null
+                ? protocol.getDecoderConfig() : new DecoderConfig(Context.getConfig(), PROTOCOL_UNKNOWN));
+    }
+
+    private BaseProtocolDecoder(Protocol protocol, DecoderConfig decoderConfig) {
+        super(decoderConfig.getSaveOriginal(), decoderConfig.getBatchPositions(),
+                protocol != null ? protocol.getCaptureWriter() : null);
         this.protocol = protocol;
-        statisticsManager = Main.getInjector() != null ? Main.getInjector().getInstance(StatisticsManager.class) : null;
+        this.decoderConfig = decoderConfig;
+        if (protocol != null) {
+            addressDeviceSessions = protocol.getAddressDeviceSessions();
+            statisticsManager = protocol.getStatisticsManager();
+        } else {
+            addressDeviceSessions = new DeviceSessionCache(Integer.MAX_VALUE, 0);
+            statisticsManager = null;
+        }
     }
 
     public String getProtocolName() {
@@ -62,7 +79,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     }
 
     public String getServer(Channel channel, char delimiter) {
-        String server = config.getString(getProtocolName() + ".server");
+        String server = decoderConfig.getServer();
         if (server == null && channel != null) {
             InetSocketAddress address = (InetSocketAddress) channel.localAddress();
             server = address.getAddress().getHostAddress() + ":" + address.getPort();
@@ -71,7 +88,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     }
 
     protected double convertSpeed(double value, String defaultUnits) {
-        switch (config.getString(getProtocolName() + ".speed", defaultUnits)) {
+        switch (decoderConfig.getSpeedUnits(defaultUnits)) {
             case "kmh":
                 return UnitsConverter.knotsFromKph(value);
             case "mps":
@@ -94,7 +111,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         if (timeZoneName != null) {
             result = TimeZone.getTimeZone(timeZoneName);
         } else {
-            int timeZoneOffset = config.getInteger(getProtocolName() + ".timezone", 0);
+            int timeZoneOffset = decoderConfig.getTimeZoneOffset();
             if (timeZoneOffset != 0) {
                 result.setRawOffset(timeZoneOffset * 1000);
                 LOGGER.warn("Config parameter " + getProtocolName() + ".timezone is deprecated");
@@ -103,8 +120,29 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         return result;
     }
 
-    private DeviceSession channelDeviceSession; // connection-based protocols
-    private final Map<SocketAddress, DeviceSession> addressDeviceSessions = new HashMap<>(); // connectionless protocols
+    private Map<AttributeKey<?>, Object> detachedState; // decoding without a channel
+
+    /**
+     * Per-connection state is kept in channel attributes, so decoders without other per-connection fields can be
+     * shared by all channels of a protocol.
+     */
+    protected <T> T getChannelState(Channel channel, AttributeKey<T> key) {
+        if (channel != null) {
+            return channel.attr(key).get();
+        }
+        return detachedState != null ? (T) detachedState.get(key) : null;
+    }
+
+    protected <T> void setChannelState(Channel channel, AttributeKey<T> key, T value) {
+        if (channel != null) {
+            channel.attr(key).set(value);
+        } else {
+            if (detachedState == null) {
+                detachedState = new HashMap<>();
+            }
+            detachedState.put(key, value);
+        }
+    }
 
     private long findDeviceId(SocketAddress remoteAddress, String... uniqueIds) {
         if (uniqueIds.length > 0) {
@@ -123,10 +161,10 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
             } catch (Exception e) {
                 LOGGER.warn("Find device error", e);
             }
-            if (deviceId == 0 && config.getBoolean("database.registerUnknown")) {
+            if (deviceId == 0 && decoderConfig.getRegisterUnknown()) {
                 return identityManager.addUnknownDevice(uniqueIds[0]);
             }
-            if (device != null && !device.getDisabled() || config.getBoolean("database.storeDisabled")) {
+            if (device != null && !device.getDisabled() || decoderConfig.getStoreDisabled()) {
                 return deviceId;
             }
             StringBuilder message = new StringBuilder();
@@ -152,9 +190,8 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
 
     public DeviceSession getDeviceSession(
             Channel channel, SocketAddress remoteAddress, boolean ignoreCache, String... uniqueIds) {
-        if (channel != null && BasePipelineFactory.getHandler(channel.pipeline(), HttpRequestDecoder.class) != null
-                || ignoreCache || config.getBoolean(getProtocolName() + ".ignoreSessionCache")
-                || config.getBoolean("decoder.ignoreSessionCache")) {
+        if (channel != null && BasePipelineFactory.isHttp(channel)
+                || ignoreCache || decoderConfig.getIgnoreSessionCache()) {
             long deviceId = findDeviceId(remoteAddress, uniqueIds);
             if (deviceId != 0) {
                 if (connectionManager != null) {
@@ -181,17 +218,29 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
                 return null;
             }
         } else {
-            if (channelDeviceSession == null) {
+            DeviceSession deviceSession = getChannelState(channel, DEVICE_SESSION);
+            if (deviceSession == null) {
                 long deviceId = findDeviceId(remoteAddress, uniqueIds);
                 if (deviceId != 0) {
-                    channelDeviceSession = new DeviceSession(deviceId);
+                    deviceSession = new DeviceSession(deviceId);
+                    setChannelState(channel, DEVICE_SESSION, deviceSession);
                     if (connectionManager != null) {
                         connectionManager.addActiveDevice(deviceId, protocol, channel, remoteAddress);
                     }
                 }
             }
-            return channelDeviceSession;
+            return deviceSession;
+        }
+    }
+
+    /**
+     * Returns session of an already identified device without looking up the device.
+     */
+    public DeviceSession findDeviceSession(Channel channel, SocketAddress remoteAddress) {
+        if (channel instanceof DatagramChannel) {
+            return addressDeviceSessions.get(remoteAddress);
         }
+        return getChannelState(channel, DEVICE_SESSION);
     }
 
     public void getLastLocation(Position position, Date deviceTime) {
@@ -251,7 +300,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
 
     protected void sendQueuedCommands(Channel channel, SocketAddress remoteAddress, long deviceId) {
         CommandsManager commandsManager = Context.getCommandsManager();
-        if (commandsManager != null) {
+        if (commandsManager != null && (channel == null || channel.isWritable())) { // otherwise keep them queued
             for (Command command : commandsManager.readQueuedCommands(deviceId)) {
                 protocol.sendDataCommand(channel, remoteAddress, command);
             }
@@ -261,7 +310,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     @Override
     protected Object handleEmptyMessage(Channel channel, SocketAddress remoteAddress, Object msg) {
         DeviceSession deviceSession = getDeviceSession(channel, remoteAddress);
-        if (config.getBoolean("database.saveEmpty") && deviceSession != null) {
+        if (decoderConfig.getSaveEmpty() && deviceSession != null) {
             Position position = new Position(getProtocolName());
             position.setDeviceId(deviceSession.getDeviceId());
             getLastLocation(position, null);
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.buffer.Unpooled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads files written by {@link CaptureWriter}.
+ * <p>
+ * Data record: length of the message (int, zero after the last record), type (byte), device id (long), time (long),
+ * protocol name length (byte), protocol name, message.
+ * <p>
+ * Index entry: device id (long), time (long, zero after the last entry), record offset (int).
+ */
+public class CaptureReader {
+
+    public static class Record {
+
+        private final int offset;
+        private final long deviceId;
+        private final long time;
+        private final String protocol;
+        private final Object message;
+
+        public Record(int offset, long deviceId, long time, String protocol, Object message) {
+            this.offset = offset;
+            this.deviceId = deviceId;
+            this.time = time;
+            this.protocol = protocol;
+            this.message = message;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public long getDeviceId() {
+            return deviceId;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * Returns a new {@link io.netty.buffer.ByteBuf} for binary messages or a {@link String} for text messages.
+         */
+        public Object getMessage() {
+            return message;
+        }
+
+    }
+
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer index;
+
+    public CaptureReader(File dataFile) throws IOException {
+        String name = dataFile.getPath();
+        if (name.endsWith(CaptureWriter.DATA_EXTENSION)) {
+            name = name.substring(0, name.length() - CaptureWriter.DATA_EXTENSION.length());
+        }
+        data = map(new File(name + CaptureWriter.DATA_EXTENSION));
+        index = map(new File(name + CaptureWriter.INDEX_EXTENSION));
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Looks up a record by reference stored in the {@link org.traccar.model.Position#KEY_CAPTURE} attribute.
+     */
+    public static Record read(File path, String reference) throws IOException {
+        int separator = reference.lastIndexOf(':');
+        CaptureReader reader = new CaptureReader(new File(path, reference.substring(0, separator)));
+        return reader.read(Integer.parseInt(reference.substring(separator + 1)));
+    }
+
+    /**
+     * Returns record at the given offset or null if there is no complete record.
+     */
+    public Record read(int offset) {
+        if (offset < 0 || offset + CaptureWriter.HEADER_LENGTH > data.limit()) {
+            return null;
+        }
+        ByteBuffer buf = data.duplicate();
+        buf.position(offset);
+        int length = buf.getInt();
+        if (length <= 0) {
+            return null;
+        }
+        byte type = buf.get();
+        long deviceId = buf.getLong();
+        long time = buf.getLong();
+        byte[] protocol = new byte[buf.get()];
+        buf.get(protocol);
+        byte[] message = new byte[length];
+        buf.get(message);
+        return new Record(
+                offset, deviceId, time, new String(protocol, StandardCharsets.US_ASCII),
+                type == CaptureWriter.TYPE_TEXT
+                        ? new String(message, StandardCharsets.UTF_8) : Unpooled.wrappedBuffer(message));
+    }
+
+    /**
+     * Returns records in the order they were written.
+     *
+     * @param deviceId device id or zero for all devices
+     * @param from minimum time in milliseconds, inclusive
+     * @param to maximum time in milliseconds, exclusive
+     */
+    public List<Record> find(long deviceId, long from, long to) {
+        List<Record> result = new ArrayList<>();
+        ByteBuffer buf = index.duplicate();
+        while (buf.remaining() >= CaptureWriter.INDEX_ENTRY_LENGTH) {
+            long entryDeviceId = buf.getLong();
+            long time = buf.getLong();
+            int offset = buf.getInt();
+            if (time == 0) {
+                break;
+            }
+            if ((deviceId == 0 || deviceId == entryDeviceId) && time >= from && time < to) {
+                Record record = read(offset);
+                if (record != null) {
+                    result.add(record);
+                }
+            }
+        }
+        return result;
+    }
+
+}
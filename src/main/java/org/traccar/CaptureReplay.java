@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.traccar.model.Position;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feeds records from a capture file back into protocol decoders and prints decoded positions as JSON.
+ * <p>
+ * Usage: CaptureReplay &lt;config file&gt; &lt;capture file&gt; [device id [from [to]]], where time limits are in
+ * milliseconds. Protocols have to be enabled in the configuration. Only protocol handlers are used, so positions
+ * are not stored, but decoders still identify devices and update their status, so it should be run against a
+ * copy of the database.
+ */
+public final class CaptureReplay {
+
+    private CaptureReplay() {
+    }
+
+    private static EmbeddedChannel createChannel(String protocol) {
+        BaseProtocol baseProtocol = Context.getServerManager().getProtocol(protocol);
+        if (baseProtocol == null || baseProtocol.getServerList().isEmpty()) {
+            return null;
+        }
+        EmbeddedChannel channel = new EmbeddedChannel();
+        TrackerServer server = baseProtocol.getServerList().iterator().next();
+        server.addProtocolHandlers(handler -> channel.pipeline().addLast(handler));
+        return channel;
+    }
+
+    public static void replay(CaptureReader reader, long deviceId, long from, long to, PrintStream out)
+            throws Exception {
+        Map<String, EmbeddedChannel> channels = new HashMap<>();
+        for (CaptureReader.Record record : reader.find(deviceId, from, to)) {
+            EmbeddedChannel channel = channels.computeIfAbsent(record.getProtocol(), CaptureReplay::createChannel);
+            BaseProtocolDecoder decoder = channel != null ? channel.pipeline().get(BaseProtocolDecoder.class) : null;
+            if (decoder == null) {
+                out.println("Protocol " + record.getProtocol() + " is not enabled, record " + record.getOffset());
+                continue;
+            }
+            decoder.channelRead(
+                    channel.pipeline().context(decoder),
+                    new NetworkMessage(record.getMessage(), channel.remoteAddress()));
+            Object message;
+            while ((message = channel.readInbound()) != null) {
+                if (message instanceof Position) {
+                    out.println(Context.getObjectMapper().writeValueAsString(message));
+                } else if (message instanceof PositionBatch) {
+                    for (Position position : ((PositionBatch) message).getPositions()) {
+                        out.println(Context.getObjectMapper().writeValueAsString(position));
+                    }
+                }
+            }
+            channel.releaseOutbound();
+        }
+        for (EmbeddedChannel channel : channels.values()) {
+            if (channel != null) {
+                channel.finishAndReleaseAll();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: CaptureReplay <config file> <capture file> [device id [from [to]]]");
+            return;
+        }
+        Main.init(args[0]);
+        replay(
+                new CaptureReader(new File(args[1])),
+                args.length > 2 ? Long.parseLong(args[2]) : 0,
+                args.length > 3 ? Long.parseLong(args[3]) : 0,
+                args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE,
+                System.out);
+        System.exit(0); // context starts non-daemon threads
+    }
+
+}
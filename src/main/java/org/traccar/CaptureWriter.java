@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Appends original messages to memory mapped capture files. Each file has a data part with the records and an index
+ * part with device id, time and offset of every record. Files are preallocated to a fixed size and a new pair is
+ * started when either of them is full, deleting the oldest pairs above the configured file count. Record layout is
+ * described in {@link CaptureReader}.
+ */
+public class CaptureWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaptureWriter.class);
+
+    public static final String DATA_EXTENSION = ".cap";
+    public static final String INDEX_EXTENSION = ".idx";
+
+    public static final byte TYPE_BINARY = 0;
+    public static final byte TYPE_TEXT = 1;
+
+    static final int HEADER_LENGTH = 4 + 1 + 8 + 8 + 1;
+    static final int INDEX_ENTRY_LENGTH = 8 + 8 + 4;
+
+    private final File path;
+    private final int fileSize;
+    private final int maxFiles;
+
+    private String name;
+    private MappedByteBuffer data;
+    private MappedByteBuffer index;
+
+    public CaptureWriter(String path, int fileSize, int maxFiles) {
+        this.path = new File(path);
+        this.fileSize = fileSize;
+        this.maxFiles = maxFiles;
+        this.path.mkdirs();
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void deleteOldest() {
+        String[] names = path.list((dir, fileName) -> fileName.endsWith(DATA_EXTENSION));
+        if (names == null || names.length < maxFiles) {
+            return;
+        }
+        Arrays.sort(names); // names start with creation time in milliseconds
+        for (int i = 0; i <= names.length - maxFiles; i++) {
+            String oldName = names[i].substring(0, names[i].length() - DATA_EXTENSION.length());
+            if (!new File(path, oldName + DATA_EXTENSION).delete()
+                    || !new File(path, oldName + INDEX_EXTENSION).delete()) {
+                LOGGER.warn("Failed to delete capture file {}", oldName);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        close();
+        if (maxFiles > 0) {
+            deleteOldest();
+        }
+        String newName = String.valueOf(System.currentTimeMillis());
+        if (newName.equals(name)) {
+            newName += "-" + System.nanoTime();
+        }
+        name = newName;
+        data = map(new File(path, name + DATA_EXTENSION), fileSize);
+        index = map(new File(path, name + INDEX_EXTENSION), fileSize / 4);
+    }
+
+    /**
+     * Writes the whole frame, from index zero to the writer index, without changing buffer indexes. Strings are
+     * stored in UTF-8.
+     *
+     * @return reference to the record in "file:offset" format or null if the message could not be written
+     */
+    public String write(String protocol, long deviceId, long time, Object message) {
+        byte type;
+        ByteBuf buf = null;
+        byte[] bytes = null;
+        int length;
+        if (message instanceof ByteBuf) {
+            type = TYPE_BINARY;
+            buf = (ByteBuf) message;
+            length = buf.writerIndex();
+        } else if (message instanceof String) {
+            type = TYPE_TEXT;
+            bytes = ((String) message).getBytes(StandardCharsets.UTF_8);
+            length = bytes.length;
+        } else {
+            return null;
+        }
+        byte[] protocolBytes = protocol != null ? protocol.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        int recordLength = HEADER_LENGTH + protocolBytes.length + length;
+        if (length == 0 || protocolBytes.length > Byte.MAX_VALUE || recordLength > fileSize) {
+            return null;
+        }
+
+        synchronized (this) {
+            try {
+                if (data == null || data.remaining() < recordLength
+                        || index.remaining() < INDEX_ENTRY_LENGTH) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Capture file error", e);
+                data = null;
+                return null;
+            }
+
+            int offset = data.position();
+            data.position(offset + 4);
+            data.put(type);
+            data.putLong(deviceId);
+            data.putLong(time);
+            data.put((byte) protocolBytes.length);
+            data.put(protocolBytes);
+            if (buf != null) {
+                ByteBuffer target = data.slice();
+                target.limit(length);
+                buf.getBytes(0, target);
+                data.position(data.position() + length);
+            } else {
+                data.put(bytes);
+            }
+            data.putInt(offset, length); // publish record after its content is complete
+
+            int entry = index.position();
+            index.putLong(entry, deviceId);
+            index.putInt(entry + 16, offset);
+            index.putLong(entry + 8, time); // non-zero time marks a complete entry
+            index.position(entry + INDEX_ENTRY_LENGTH);
+
+            return name + ":" + offset;
+        }
+    }
+
+    public synchronized void close() {
+        if (data != null) {
+            data.force();
+            index.force();
+            data = null;
+            index = null;
+        }
+    }
+
+}
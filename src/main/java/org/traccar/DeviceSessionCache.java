@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.net.SocketAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Device sessions of connectionless protocols by remote address. Entries that were not accessed for longer than the
+ * timeout are removed, and the least recently used entries are removed when the cache is full. Devices behind NAT
+ * often change source port, so without eviction the cache would grow indefinitely.
+ * <p>
+ * The cache is shared by all datagram sockets of a protocol, so large caches are split into shards by address, each
+ * with its own lock and an equal part of the size limit, to avoid serializing network threads on a single lock.
+ */
+public class DeviceSessionCache {
+
+    private static final int MAX_SHARDS = 16;
+    private static final int MIN_SHARD_SIZE = 1024;
+
+    private static final class Entry {
+
+        private final DeviceSession deviceSession;
+        private long lastAccess;
+
+        private Entry(DeviceSession deviceSession, long lastAccess) {
+            this.deviceSession = deviceSession;
+            this.lastAccess = lastAccess;
+        }
+
+    }
+
+    private final class Shard {
+
+        private final Map<SocketAddress, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxSize;
+
+        private Shard(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private synchronized DeviceSession get(SocketAddress remoteAddress, long now) {
+            Entry entry = entries.get(remoteAddress);
+            if (entry != null) {
+                if (!isExpired(entry, now)) {
+                    entry.lastAccess = now;
+                    return entry.deviceSession;
+                }
+                entries.remove(remoteAddress);
+                evictions.increment();
+            }
+            return null;
+        }
+
+        private synchronized void put(SocketAddress remoteAddress, DeviceSession deviceSession, long now) {
+            entries.put(remoteAddress, new Entry(deviceSession, now));
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) { // iteration order is from least recently accessed
+                Entry entry = iterator.next();
+                if (entries.size() > maxSize || isExpired(entry, now)) {
+                    iterator.remove();
+                    evictions.increment();
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+    }
+
+    private final long timeout;
+    private final Shard[] shards;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of sessions
+     * @param timeout idle time in milliseconds after which session expires, zero to disable expiration
+     */
+    public DeviceSessionCache(int maxSize, long timeout) {
+        this.timeout = timeout;
+        int size = Math.max(maxSize, 1);
+        int count = Integer.highestOneBit(Math.max(Math.min(MAX_SHARDS, size / MIN_SHARD_SIZE), 1));
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(size / count);
+        }
+    }
+
+    private Shard shard(SocketAddress remoteAddress) {
+        int hash = remoteAddress.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    public DeviceSession get(SocketAddress remoteAddress) {
+        DeviceSession deviceSession = shard(remoteAddress).get(remoteAddress, System.currentTimeMillis());
+        if (deviceSession != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return deviceSession;
+    }
+
+    public void put(SocketAddress remoteAddress, DeviceSession deviceSession) {
+        shard(remoteAddress).put(remoteAddress, deviceSession, System.currentTimeMillis());
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return timeout > 0 && now - entry.lastAccess > timeout;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+}
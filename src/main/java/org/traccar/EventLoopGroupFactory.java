@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,22 +16,113 @@
 package org.traccar;
 
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Keys;
 
 public final class EventLoopGroupFactory {
 
-    private static EventLoopGroup bossGroup = new NioEventLoopGroup();
-    private static EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopGroupFactory.class);
+
+    private static Boolean epoll;
+    private static int datagramSockets;
+    private static EventLoopGroup bossGroup;
+    private static EventLoopGroup workerGroup;
+    private static ProcessingExecutor processingGroup;
 
     private EventLoopGroupFactory() {
     }
 
-    public static EventLoopGroup getBossGroup() {
+    /**
+     * Returns true if native epoll transport is configured and can be loaded on this system. Otherwise NIO transport
+     * is used.
+     */
+    public static synchronized boolean isEpoll() {
+        if (epoll == null) {
+            epoll = false;
+            String transport = Context.getConfig().getString(Keys.SERVER_TRANSPORT, "nio");
+            if (transport.equals("epoll")) {
+                if (Epoll.isAvailable()) {
+                    epoll = true;
+                } else {
+                    LOGGER.warn("Epoll transport is not available, using NIO", Epoll.unavailabilityCause());
+                }
+            } else if (!transport.equals("nio")) {
+                LOGGER.warn("Unknown transport {}, using NIO", transport);
+            }
+        }
+        return epoll;
+    }
+
+    private static EventLoopGroup createGroup(int threads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name);
+        if (isEpoll()) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        } else {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+    }
+
+    public static synchronized EventLoopGroup getBossGroup() {
+        if (bossGroup == null) {
+            bossGroup = createGroup(Context.getConfig().getInteger(Keys.SERVER_BOSS_THREADS), "boss");
+        }
         return bossGroup;
     }
 
-    public static EventLoopGroup getWorkerGroup() {
+    public static synchronized EventLoopGroup getWorkerGroup() {
+        if (workerGroup == null) {
+            workerGroup = createGroup(Context.getConfig().getInteger(Keys.SERVER_WORKER_THREADS), "worker");
+        }
         return workerGroup;
     }
 
+    public static Class<? extends ServerSocketChannel> getServerChannelClass() {
+        return isEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return isEpoll() ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    /**
+     * Number of datagram channels to bind for each UDP port. More than one socket is only possible with epoll
+     * transport, which supports SO_REUSEPORT.
+     */
+    public static synchronized int getDatagramSockets() {
+        if (datagramSockets == 0) {
+            datagramSockets = Math.max(Context.getConfig().getInteger(Keys.SERVER_DATAGRAM_SOCKETS), 1);
+            if (datagramSockets > 1 && !isEpoll()) {
+                LOGGER.warn("Multiple datagram sockets require epoll transport, using single socket");
+                datagramSockets = 1;
+            }
+        }
+        return datagramSockets;
+    }
+
+    /**
+     * Executor for handlers after protocol decoding. Messages are assigned to threads by device, so messages from the
+     * same device are processed in order even if they come from different connections. Returns null if processing
+     * should stay on the network threads.
+     */
+    public static synchronized ProcessingExecutor getProcessingGroup() {
+        if (processingGroup == null) {
+            int threads = Context.getConfig().getInteger(Keys.SERVER_PROCESSING_THREADS);
+            if (threads > 0) {
+                processingGroup = new ProcessingExecutor(threads);
+            }
+        }
+        return processingGroup;
+    }
+
 }
@@ -27,14 +27,50 @@ import org.traccar.model.Position;
 
 import java.net.SocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter {
 
-    private void saveOriginal(Object decodedMessage, Object originalMessage) {
-        if (Context.getConfig().getBoolean(Keys.DATABASE_SAVE_ORIGINAL) && decodedMessage instanceof Position) {
+    private final boolean saveOriginal;
+    private final boolean batchPositions;
+    private final CaptureWriter captureWriter;
+
+    public ExtendedObjectDecoder() {
+        this(Context.getConfig().getBoolean(Keys.DATABASE_SAVE_ORIGINAL),
+                Context.getConfig().getBoolean(Keys.DECODER_BATCH_POSITIONS),
+                Main.getInjector() != null ? Main.getInjector().getInstance(CaptureWriter.class) : null);
+    }
+
+    protected ExtendedObjectDecoder(boolean saveOriginal, boolean batchPositions, CaptureWriter captureWriter) {
+        this.saveOriginal = saveOriginal;
+        this.batchPositions = batchPositions;
+        this.captureWriter = captureWriter;
+    }
+
+    private String captureOriginal(Object decodedMessage, Object originalMessage) {
+        Object first = decodedMessage;
+        if (decodedMessage instanceof Collection) {
+            Collection<?> collection = (Collection<?>) decodedMessage;
+            first = collection.isEmpty() ? null : collection.iterator().next();
+        }
+        if (first instanceof Position) {
+            Position position = (Position) first;
+            return captureWriter.write(
+                    position.getProtocol(), position.getDeviceId(), System.currentTimeMillis(), originalMessage);
+        }
+        return null;
+    }
+
+    private void saveOriginal(Object decodedMessage, Object originalMessage, String captureReference) {
+        if (saveOriginal && decodedMessage instanceof Position) {
             Position position = (Position) decodedMessage;
-            if (originalMessage instanceof ByteBuf) {
+            if (captureReference != null) {
+                position.set(Position.KEY_CAPTURE, captureReference);
+            } else if (originalMessage instanceof ByteBuf) {
                 ByteBuf buf = (ByteBuf) originalMessage;
                 position.set(Position.KEY_ORIGINAL, ByteBufUtil.hexDump(buf, 0, buf.writerIndex()));
             } else if (originalMessage instanceof String) {
@@ -44,6 +80,23 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
         }
     }
 
+    private void fireBatches(
+            ChannelHandlerContext ctx, Collection<?> decodedMessages, Object originalMessage, String captureReference) {
+        Map<Long, List<Position>> devicePositions = new LinkedHashMap<>();
+        for (Object o : decodedMessages) {
+            saveOriginal(o, originalMessage, captureReference);
+            if (o instanceof Position) {
+                Position position = (Position) o;
+                devicePositions.computeIfAbsent(position.getDeviceId(), k -> new ArrayList<>()).add(position);
+            } else {
+                ctx.fireChannelRead(o);
+            }
+        }
+        for (List<Position> positions : devicePositions.values()) {
+            ctx.fireChannelRead(positions.size() > 1 ? new PositionBatch(positions) : positions.get(0));
+        }
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         NetworkMessage networkMessage = (NetworkMessage) msg;
@@ -55,13 +108,20 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
                 decodedMessage = handleEmptyMessage(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
             }
             if (decodedMessage != null) {
-                if (decodedMessage instanceof Collection) {
+                String captureReference = null;
+                if (saveOriginal && captureWriter != null) {
+                    captureReference = captureOriginal(decodedMessage, originalMessage);
+                }
+                if (decodedMessage instanceof Collection && batchPositions
+                        && ((Collection) decodedMessage).size() > 1) {
+                    fireBatches(ctx, (Collection) decodedMessage, originalMessage, captureReference);
+                } else if (decodedMessage instanceof Collection) {
                     for (Object o : (Collection) decodedMessage) {
-                        saveOriginal(o, originalMessage);
+                        saveOriginal(o, originalMessage, captureReference);
                         ctx.fireChannelRead(o);
                     }
                 } else {
-                    saveOriginal(decodedMessage, originalMessage);
+                    saveOriginal(decodedMessage, originalMessage, captureReference);
                     ctx.fireChannelRead(decodedMessage);
                 }
             }
@@ -27,17 +27,13 @@ import java.lang.management.MemoryMXBean;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.RuntimeMXBean;
 import java.nio.charset.Charset;
-import java.sql.SQLException;
 import java.util.Timer;
-import java.util.TimerTask;
 import java.util.Locale;
 
 public final class Main {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
-    private static final long CLEAN_PERIOD = 24 * 60 * 60 * 1000;
-
     private static Injector injector;
 
     public static Injector getInjector() {
@@ -119,23 +115,17 @@ public final class Main {
         }
     }
 
-    private static void scheduleDatabaseCleanup() {
-        new Timer().scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    Context.getDataManager().clearHistory();
-                } catch (SQLException error) {
-                    LOGGER.warn("Clear history error", error);
-                }
-            }
-        }, 0, CLEAN_PERIOD);
+    /**
+     * Initialize context and dependency injection without starting servers.
+     */
+    public static void init(String configFile) throws Exception {
+        Context.init(configFile);
+        injector = Guice.createInjector(new MainModule());
     }
 
     public static void run(String configFile) {
         try {
-            Context.init(configFile);
-            injector = Guice.createInjector(new MainModule());
+            init(configFile);
             logSystemInfo();
             LOGGER.info("Version: " + Main.class.getPackage().getImplementationVersion());
             LOGGER.info("Starting server...");
@@ -147,7 +137,6 @@ public final class Main {
             Context.getScheduleManager().start();
 
             scheduleHealthCheck();
-            scheduleDatabaseCleanup();
 
             Thread.setDefaultUncaughtExceptionHandler((t, e) -> LOGGER.error("Thread exception", e));
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2018 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,9 +25,11 @@ import org.traccar.database.AttributesManager;
 import org.traccar.database.CalendarManager;
 import org.traccar.database.DataManager;
 import org.traccar.database.DeviceManager;
+import org.traccar.database.DeviceTelemetryWriter;
 import org.traccar.database.GeofenceManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.database.MaintenancesManager;
+import org.traccar.database.PositionWriter;
 import org.traccar.database.StatisticsManager;
 import org.traccar.geocoder.AddressFormat;
 import org.traccar.geocoder.BanGeocoder;
@@ -50,6 +52,7 @@ import org.traccar.geolocation.GoogleGeolocationProvider;
 import org.traccar.geolocation.MozillaGeolocationProvider;
 import org.traccar.geolocation.OpenCellIdGeolocationProvider;
 import org.traccar.geolocation.UnwiredGeolocationProvider;
+import org.traccar.handler.BacklogHandler;
 import org.traccar.handler.ComputedAttributesHandler;
 import org.traccar.handler.CopyAttributesHandler;
 import org.traccar.handler.DefaultDataHandler;
@@ -64,6 +67,7 @@ import org.traccar.handler.RemoteAddressHandler;
 import org.traccar.handler.SpeedLimitHandler;
 import org.traccar.handler.TimeHandler;
 import org.traccar.handler.events.AlertEventHandler;
+import org.traccar.handler.events.BacklogEventQueue;
 import org.traccar.handler.events.CommandResultEventHandler;
 import org.traccar.handler.events.DriverEventHandler;
 import org.traccar.handler.events.FuelDropEventHandler;
@@ -270,6 +274,35 @@ public class MainModule extends AbstractModule {
         return null;
     }
 
+    @Singleton
+    @Provides
+    public static DeviceTelemetryWriter provideDeviceTelemetryWriter(Config config, @Nullable DataManager dataManager) {
+        if (dataManager != null) {
+            return new DeviceTelemetryWriter(config, dataManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static CaptureWriter provideCaptureWriter(Config config) {
+        if (config.getBoolean(Keys.DATABASE_SAVE_ORIGINAL) && config.hasKey(Keys.CAPTURE_PATH)) {
+            return new CaptureWriter(
+                    config.getString(Keys.CAPTURE_PATH), config.getInteger(Keys.CAPTURE_FILE_SIZE, 64 * 1024 * 1024),
+                    config.getInteger(Keys.CAPTURE_MAX_FILES, 16));
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static ApiForwarder provideApiForwarder(Config config) {
+        if (config.hasKey(Keys.OUTPUT_API)) {
+            return new ApiForwarder(config);
+        }
+        return null;
+    }
+
     @Singleton
     @Provides
     public static GeolocationHandler provideGeolocationHandler(
@@ -345,9 +378,36 @@ public class MainModule extends AbstractModule {
 
     @Singleton
     @Provides
-    public static DefaultDataHandler provideDefaultDataHandler(@Nullable DataManager dataManager) {
+    public static PositionWriter providePositionWriter(Config config, @Nullable DataManager dataManager) {
         if (dataManager != null) {
-            return new DefaultDataHandler(dataManager);
+            return new PositionWriter(config, dataManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static DefaultDataHandler provideDefaultDataHandler(@Nullable PositionWriter positionWriter) {
+        if (positionWriter != null) {
+            return new DefaultDataHandler(positionWriter);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static BacklogHandler provideBacklogHandler(Config config, IdentityManager identityManager) {
+        if (config.getLong(Keys.PROCESSING_BACKLOG_AGE) > 0) {
+            return new BacklogHandler(config, identityManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static BacklogEventQueue provideBacklogEventQueue(Config config) {
+        if (config.getLong(Keys.PROCESSING_BACKLOG_AGE) > 0 && config.getBoolean(Keys.PROCESSING_BACKLOG_EVENTS)) {
+            return new BacklogEventQueue(config.getInteger(Keys.PROCESSING_BACKLOG_QUEUE_SIZE, 10000));
         }
         return null;
     }
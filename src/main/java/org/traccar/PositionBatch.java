@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Positions of one device decoded from the same message, passed through processing handlers as a single pipeline
+ * message. Positions are kept in the order they were decoded.
+ */
+public class PositionBatch {
+
+    private final List<Position> positions;
+
+    public PositionBatch(List<Position> positions) {
+        this.positions = positions;
+    }
+
+    public long getDeviceId() {
+        return positions.get(0).getDeviceId();
+    }
+
+    public List<Position> getPositions() {
+        return positions;
+    }
+
+    /**
+     * Checks whether all positions are backlog, in which case the batch can skip enrichment handlers as a whole.
+     */
+    public boolean isBacklog() {
+        for (Position position : positions) {
+            if (!position.getBacklog()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns backlog positions as a separate batch, so asynchronous handlers can pass them on as a whole and only
+     * split off live positions. Returns null if there are no backlog positions.
+     */
+    public PositionBatch getBacklogBatch() {
+        List<Position> result = new ArrayList<>();
+        for (Position position : positions) {
+            if (position.getBacklog()) {
+                result.add(position);
+            }
+        }
+        return result.isEmpty() ? null : new PositionBatch(result);
+    }
+
+    public List<Position> getLivePositions() {
+        List<Position> result = new ArrayList<>();
+        for (Position position : positions) {
+            if (!position.getBacklog()) {
+                result.add(position);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns position with the latest fix time, which is the only one that can become the latest device position.
+     */
+    public Position getNewest() {
+        Position newest = positions.get(0);
+        for (Position position : positions) {
+            if (position.getFixTime().compareTo(newest.getFixTime()) >= 0) {
+                newest = position;
+            }
+        }
+        return newest;
+    }
+
+}
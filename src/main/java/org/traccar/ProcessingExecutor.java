@@ -0,0 +1,454 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.AbstractEventExecutor;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.traccar.model.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for processing handlers that runs messages of the same device on the same thread, so they are handled in
+ * order even when they arrive on different channels, while different devices are processed in parallel.
+ * <p>
+ * Sharable handlers of each channel are added with a {@link #channelExecutor} view, which Netty sees as a single
+ * executor that is considered to be in the event loop on any of the threads. Messages are assigned to threads by
+ * {@link org.traccar.handler.ProcessingDispatchHandler}. Tasks that Netty submits on its own from a network thread,
+ * like channel activation and handler removal, go to one thread chosen for the channel when it is created, same as
+ * the other channel lifecycle events. Lifecycle tasks wait until messages dispatched before them and asynchronous
+ * operations started for them have finished, so handlers never see a message after the channel became inactive or
+ * after they were removed.
+ * <p>
+ * Handlers that keep per channel state are added with a {@link #serialExecutor} view, which only runs on the channel
+ * thread, so they are never called concurrently, even when the channel carries messages of many devices. Handlers
+ * following them stay on the channel thread.
+ */
+public class ProcessingExecutor extends AbstractEventExecutor {
+
+    private static final AttributeKey<ChannelExecutor> CHANNEL_EXECUTOR = AttributeKey.valueOf("processingExecutor");
+
+    private static final ThreadLocal<Group> CURRENT_GROUP = new ThreadLocal<>();
+
+    private final EventExecutor[] shards;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Promise<Void> terminationFuture = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+
+    public ProcessingExecutor(int threads) {
+        shards = new EventExecutor[threads];
+        ThreadFactory threadFactory = new DefaultThreadFactory("processing");
+        AtomicInteger terminated = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            shards[i] = new DefaultEventExecutor(threadFactory);
+            shards[i].terminationFuture().addListener(future -> {
+                if (terminated.incrementAndGet() == shards.length) {
+                    terminationFuture.setSuccess(null);
+                }
+            });
+        }
+    }
+
+    private EventExecutor shard(long key) {
+        return shards[(int) ((key & Long.MAX_VALUE) % shards.length)];
+    }
+
+    /**
+     * Runs the task on the thread assigned to the key, which is normally the device id.
+     */
+    public void execute(long key, Runnable task) {
+        shard(key).execute(task);
+    }
+
+    /**
+     * Runs a message task of the channel on the thread assigned to the key. Lifecycle tasks of the channel submitted
+     * later wait for it.
+     */
+    public void execute(Channel channel, long key, Runnable task) {
+        ChannelExecutor executor = channel.attr(CHANNEL_EXECUTOR).get();
+        if (executor != null) {
+            executor.submit(shard(key), task);
+        } else {
+            execute(key, task);
+        }
+    }
+
+    /**
+     * Assigns a thread to a new channel and returns executor for its sharable processing handlers.
+     */
+    public EventExecutor channelExecutor(Channel channel) {
+        EventExecutor shard = shards[(next.getAndIncrement() & Integer.MAX_VALUE) % shards.length];
+        ChannelExecutor executor = new ChannelExecutor(this, shard);
+        channel.attr(CHANNEL_EXECUTOR).set(executor);
+        return executor;
+    }
+
+    /**
+     * Returns executor for processing handlers that keep per channel state. Requires {@link #channelExecutor} to be
+     * called for the channel first.
+     */
+    public EventExecutor serialExecutor(Channel channel) {
+        return channel.attr(CHANNEL_EXECUTOR).get().serialExecutor;
+    }
+
+    /**
+     * Runs a channel lifecycle task on the thread assigned to the channel, after message tasks submitted before it.
+     */
+    public void executeChannel(Channel channel, Runnable task) {
+        ChannelExecutor executor = channel.attr(CHANNEL_EXECUTOR).get();
+        if (executor != null) {
+            executor.executeLifecycle(task);
+        } else {
+            execute(task);
+        }
+    }
+
+    /**
+     * Checks whether the handler runs on processing threads, where it can pass messages on asynchronously.
+     */
+    public static boolean isProcessing(ChannelHandlerContext ctx) {
+        return ctx.executor() instanceof ProcessingView;
+    }
+
+    /**
+     * Prepares an asynchronous operation of a processing handler and returns callback that passes the position on
+     * when the operation completes. Until then lifecycle events of the channel and handler removal wait, and the
+     * position continues on the thread of its device, so the following handlers don't process the same device
+     * concurrently. On network threads the callback simply fires the position.
+     */
+    public static Runnable suspend(ChannelHandlerContext ctx, Position position) {
+        return suspend(ctx, position.getDeviceId(), position);
+    }
+
+    public static Runnable suspend(ChannelHandlerContext ctx, PositionBatch batch) {
+        return suspend(ctx, batch.getDeviceId(), batch);
+    }
+
+    private static Runnable suspend(ChannelHandlerContext ctx, long deviceId, Object message) {
+        if (ctx.executor() instanceof ProcessingView) {
+            ProcessingView view = (ProcessingView) ctx.executor();
+            ChannelExecutor channelExecutor = view.getChannelExecutor();
+            Group group = channelExecutor.acquire();
+            EventExecutor target = view.getTarget(deviceId);
+            return () -> {
+                if (target.inEventLoop()) {
+                    channelExecutor.run(group, () -> ctx.fireChannelRead(message));
+                } else {
+                    channelExecutor.submit(target, group, () -> ctx.fireChannelRead(message));
+                    channelExecutor.release(group);
+                }
+            };
+        }
+        return () -> ctx.fireChannelRead(message);
+    }
+
+    private boolean executeCurrent(Runnable task) {
+        for (EventExecutor shard : shards) {
+            if (shard.inEventLoop()) {
+                shard.execute(task);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!executeCurrent(task)) {
+            shards[(next.getAndIncrement() & Integer.MAX_VALUE) % shards.length].execute(task);
+        }
+    }
+
+    @Override
+    public boolean inEventLoop(Thread thread) {
+        for (EventExecutor shard : shards) {
+            if (shard.inEventLoop(thread)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        for (EventExecutor shard : shards) {
+            if (!shard.isShuttingDown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        for (EventExecutor shard : shards) {
+            shard.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        for (EventExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (EventExecutor shard : shards) {
+            if (!shard.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationFuture.isDone();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    /**
+     * Message tasks of a channel followed by lifecycle tasks that have to wait for them. Tasks started by a message
+     * task, like asynchronous operations and hops to another thread, join its group.
+     */
+    private static final class Group {
+
+        private final ChannelExecutor owner;
+        private int pending;
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        private Group(ChannelExecutor owner) {
+            this.owner = owner;
+        }
+
+    }
+
+    private abstract static class ProcessingView extends AbstractEventExecutor {
+
+        private final ProcessingExecutor group;
+
+        ProcessingView(ProcessingExecutor group) {
+            super(group);
+            this.group = group;
+        }
+
+        ProcessingExecutor getGroup() {
+            return group;
+        }
+
+        abstract ChannelExecutor getChannelExecutor();
+
+        /**
+         * Returns thread where messages of the device continue after an asynchronous operation.
+         */
+        abstract EventExecutor getTarget(long deviceId);
+
+        @Override
+        public boolean isShuttingDown() {
+            return group.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return group.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return group.terminationFuture();
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            group.shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return group.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return group.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return group.awaitTermination(timeout, unit);
+        }
+
+    }
+
+    private static final class ChannelExecutor extends ProcessingView {
+
+        private final EventExecutor shard;
+        private final SerialExecutor serialExecutor;
+        private final Deque<Group> groups = new ArrayDeque<>();
+
+        private ChannelExecutor(ProcessingExecutor group, EventExecutor shard) {
+            super(group);
+            this.shard = shard;
+            serialExecutor = new SerialExecutor(this);
+        }
+
+        @Override
+        ChannelExecutor getChannelExecutor() {
+            return this;
+        }
+
+        @Override
+        EventExecutor getTarget(long deviceId) {
+            return getGroup().shard(deviceId);
+        }
+
+        synchronized Group acquire() {
+            Group group = CURRENT_GROUP.get();
+            if (group == null || group.owner != this) {
+                group = groups.peekLast();
+                if (group == null || !group.tasks.isEmpty()) {
+                    group = new Group(this);
+                    groups.addLast(group);
+                }
+            }
+            group.pending += 1;
+            return group;
+        }
+
+        private synchronized void join(Group group) {
+            group.pending += 1;
+        }
+
+        synchronized void release(Group group) {
+            group.pending -= 1;
+            while (!groups.isEmpty() && groups.peekFirst().pending == 0) {
+                for (Runnable task : groups.pollFirst().tasks) {
+                    shard.execute(task);
+                }
+            }
+        }
+
+        void submit(EventExecutor target, Runnable task) {
+            Group group = acquire();
+            target.execute(() -> run(group, task));
+        }
+
+        void submit(EventExecutor target, Group group, Runnable task) {
+            join(group);
+            target.execute(() -> run(group, task));
+        }
+
+        /**
+         * Runs a message task of the group and releases it.
+         */
+        void run(Group group, Runnable task) {
+            Group previous = CURRENT_GROUP.get();
+            CURRENT_GROUP.set(group);
+            try {
+                task.run();
+            } finally {
+                CURRENT_GROUP.set(previous);
+                release(group);
+            }
+        }
+
+        synchronized void executeLifecycle(Runnable task) {
+            Group last = groups.peekLast();
+            if (last != null) {
+                last.tasks.add(task);
+            } else {
+                shard.execute(task);
+            }
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!getGroup().executeCurrent(task)) {
+                executeLifecycle(task); // submitted by Netty from a network thread
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return getGroup().inEventLoop(thread);
+        }
+
+    }
+
+    private static final class SerialExecutor extends ProcessingView {
+
+        private final ChannelExecutor channelExecutor;
+
+        private SerialExecutor(ChannelExecutor channelExecutor) {
+            super(channelExecutor.getGroup());
+            this.channelExecutor = channelExecutor;
+        }
+
+        @Override
+        ChannelExecutor getChannelExecutor() {
+            return channelExecutor;
+        }
+
+        @Override
+        EventExecutor getTarget(long deviceId) {
+            return channelExecutor.shard;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (getGroup().inEventLoop()) {
+                channelExecutor.submit(channelExecutor.shard, task); // message passed on from a device thread
+            } else {
+                channelExecutor.executeLifecycle(task);
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return channelExecutor.shard.inEventLoop(thread);
+        }
+
+    }
+
+}
@@ -16,6 +16,8 @@
 package org.traccar;
 
 import io.netty.channel.Channel;
+import org.traccar.config.DecoderConfig;
+import org.traccar.database.StatisticsManager;
 import org.traccar.model.Command;
 
 import java.net.SocketAddress;
@@ -35,4 +37,12 @@ public interface Protocol {
 
     void sendTextCommand(String destAddress, Command command) throws Exception;
 
+    DeviceSessionCache getAddressDeviceSessions();
+
+    DecoderConfig getDecoderConfig();
+
+    StatisticsManager getStatisticsManager();
+
+    CaptureWriter getCaptureWriter();
+
 }
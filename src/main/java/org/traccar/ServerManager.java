@@ -26,6 +26,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
@@ -88,7 +89,12 @@ public class ServerManager {
         return protocolList.get(name);
     }
 
+    public Collection<BaseProtocol> getProtocols() {
+        return protocolList.values();
+    }
+
     public void start() throws Exception {
+        BasePipelineFactory.resolveHandlers();
         for (TrackerServer server: serverList) {
             try {
                 server.start();
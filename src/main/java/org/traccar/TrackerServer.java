@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,18 +19,23 @@ import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import org.traccar.config.Keys;
+import org.traccar.handler.RateLimitHandler;
 
 import java.net.InetSocketAddress;
 
 public abstract class TrackerServer {
 
     private final boolean datagram;
+    private final int sockets;
     private final AbstractBootstrap bootstrap;
+    private final BasePipelineFactory pipelineFactory;
 
     public boolean isDatagram() {
         return datagram;
@@ -42,7 +47,9 @@ public abstract class TrackerServer {
         address = Context.getConfig().getString(protocol + ".address");
         port = Context.getConfig().getInteger(protocol + ".port");
 
-        BasePipelineFactory pipelineFactory = new BasePipelineFactory(this, protocol) {
+        WriteBufferWaterMark waterMark = getWriteBufferWaterMark(protocol);
+
+        pipelineFactory = new BasePipelineFactory(this, protocol) {
             @Override
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
                 TrackerServer.this.addProtocolHandlers(pipeline);
@@ -51,21 +58,61 @@ public abstract class TrackerServer {
 
         if (datagram) {
 
-            this.bootstrap = new Bootstrap()
+            sockets = EventLoopGroupFactory.getDatagramSockets();
+
+            Bootstrap datagramBootstrap = new Bootstrap()
                     .group(EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioDatagramChannel.class)
+                    .channel(EventLoopGroupFactory.getDatagramChannelClass())
                     .handler(pipelineFactory);
 
+            if (sockets > 1) {
+                datagramBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            if (waterMark != null) {
+                datagramBootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark);
+            }
+            this.bootstrap = datagramBootstrap;
+
         } else {
 
-            this.bootstrap = new ServerBootstrap()
+            sockets = 1;
+
+            ServerBootstrap serverBootstrap = new ServerBootstrap()
                     .group(EventLoopGroupFactory.getBossGroup(), EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioServerSocketChannel.class)
+                    .channel(EventLoopGroupFactory.getServerChannelClass())
                     .childHandler(pipelineFactory);
 
+            if (waterMark != null) {
+                serverBootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark);
+            }
+            this.bootstrap = serverBootstrap;
+
         }
     }
 
+    /**
+     * Returns rate limiter shared by channels of this server or null if rate limiting is not configured.
+     */
+    public RateLimitHandler getRateLimitHandler() {
+        return pipelineFactory.getRateLimitHandler();
+    }
+
+    /**
+     * Returns configured outbound buffer limits or null to use Netty defaults.
+     */
+    public static WriteBufferWaterMark getWriteBufferWaterMark(String protocol) {
+        int high = Context.getConfig().getInteger(Keys.PROTOCOL_WRITE_BUFFER_HIGH.withPrefix(protocol));
+        int low = Context.getConfig().getInteger(Keys.PROTOCOL_WRITE_BUFFER_LOW.withPrefix(protocol));
+        if (high == 0) {
+            high = Context.getConfig().getInteger(Keys.SERVER_WRITE_BUFFER_HIGH);
+            low = Context.getConfig().getInteger(Keys.SERVER_WRITE_BUFFER_LOW);
+        }
+        if (high <= 0) {
+            return null;
+        }
+        return new WriteBufferWaterMark(low > 0 && low <= high ? low : high / 2, high);
+    }
+
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
 
     private int port;
@@ -102,9 +149,11 @@ public abstract class TrackerServer {
             endpoint = new InetSocketAddress(address, port);
         }
 
-        Channel channel = bootstrap.bind(endpoint).sync().channel();
-        if (channel != null) {
-            getChannelGroup().add(channel);
+        for (int i = 0; i < sockets; i++) {
+            Channel channel = bootstrap.bind(endpoint).sync().channel();
+            if (channel != null) {
+                getChannelGroup().add(channel);
+            }
         }
     }
 
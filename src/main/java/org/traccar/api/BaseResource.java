@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,13 +15,30 @@
  */
 package org.traccar.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.database.QueryBuilder;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.sql.SQLException;
 
 public class BaseResource {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseResource.class);
+
     @javax.ws.rs.core.Context
     private SecurityContext securityContext;
 
+    @javax.ws.rs.core.Context
+    private UriInfo uriInfo;
+
     protected long getUserId() {
         UserPrincipal principal = (UserPrincipal) securityContext.getUserPrincipal();
         if (principal != null) {
@@ -29,4 +46,32 @@ public class BaseResource {
         }
         return 0;
     }
+
+    protected interface ArrayWriter<T> {
+        void write(QueryBuilder.ResultVisitor<T, IOException> visitor) throws SQLException, IOException;
+    }
+
+    /**
+     * Writes objects to the response as a JSON array while they are read, instead of collecting them first. Checks
+     * have to be done before the call, because the writer runs after the response status is sent. A database error
+     * in the middle of the array can only abort the response, so the client gets truncated JSON. The database
+     * connection stays open until the client has read the whole array.
+     */
+    protected <T> Response streamArray(ArrayWriter<T> writer) {
+        long userId = getUserId();
+        String request = uriInfo != null ? uriInfo.getRequestUri().toString() : null;
+        StreamingOutput output = stream -> {
+            try (JsonGenerator generator = Context.getObjectMapper().getFactory().createGenerator(stream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                writer.write(generator::writeObject);
+                generator.writeEndArray();
+            } catch (SQLException e) {
+                LOGGER.warn("Streaming response aborted for user " + userId + " request " + request, e);
+                throw new IOException(e);
+            }
+        };
+        return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
 }
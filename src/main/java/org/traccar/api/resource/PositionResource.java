@@ -32,7 +32,6 @@ import javax.ws.rs.core.Response;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -48,7 +47,7 @@ public class PositionResource extends BaseResource {
     public static final String CONTENT_DISPOSITION_VALUE_GPX = "attachment; filename=positions.gpx";
 
     @GET
-    public Collection<Position> getJson(
+    public Response getJson(
             @QueryParam("deviceId") long deviceId, @QueryParam("id") List<Long> positionIds,
             @QueryParam("from") Date from, @QueryParam("to") Date to)
             throws SQLException {
@@ -59,15 +58,17 @@ public class PositionResource extends BaseResource {
                 Context.getPermissionsManager().checkDevice(getUserId(), position.getDeviceId());
                 positions.add(position);
             }
-            return positions;
+            return Response.ok(positions).build();
         } else if (deviceId == 0) {
-            return Context.getDeviceManager().getInitialState(getUserId());
+            return Response.ok(Context.getDeviceManager().getInitialState(getUserId())).build();
         } else {
             Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
             if (from != null && to != null) {
-                return Context.getDataManager().getPositions(deviceId, from, to);
+                return this.<Position>streamArray(
+                        visitor -> Context.getDataManager().getPositions(deviceId, from, to, visitor));
             } else {
-                return Collections.singleton(Context.getDeviceManager().getLastPosition(deviceId));
+                return Response.ok(Collections.singleton(Context.getDeviceManager().getLastPosition(deviceId)))
+                        .build();
             }
         }
     }
@@ -80,7 +81,7 @@ public class PositionResource extends BaseResource {
         Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
         CsvBuilder csv = new CsvBuilder();
         csv.addHeaderLine(new Position());
-        csv.addArray(Context.getDataManager().getPositions(deviceId, from, to));
+        Context.getDataManager().getPositions(deviceId, from, to, csv::addLine);
         return Response.ok(csv.build()).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_CSV).build();
     }
 
@@ -91,7 +92,7 @@ public class PositionResource extends BaseResource {
             throws SQLException {
         Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
         GpxBuilder gpx = new GpxBuilder(Context.getIdentityManager().getById(deviceId).getName());
-        gpx.addPositions(Context.getDataManager().getPositions(deviceId, from, to));
+        Context.getDataManager().getPositions(deviceId, from, to, gpx::addPosition);
         return Response.ok(gpx.build()).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_GPX).build();
     }
 
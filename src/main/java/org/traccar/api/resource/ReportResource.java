@@ -96,11 +96,12 @@ public class ReportResource extends BaseResource {
 
     @Path("route")
     @GET
-    public Collection<Position> getRoute(
+    public Response getRoute(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") Date from, @QueryParam("to") Date to) throws SQLException {
         LogAction.logReport(getUserId(), "route", from, to, deviceIds, groupIds);
-        return Route.getObjects(getUserId(), deviceIds, groupIds, from, to);
+        Collection<Long> devices = Route.checkDevices(getUserId(), deviceIds, groupIds, from, to);
+        return this.<Position>streamArray(visitor -> Route.getObjects(devices, from, to, visitor));
     }
 
 //    @Path("test")
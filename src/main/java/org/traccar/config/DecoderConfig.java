@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.config;
+
+/**
+ * Configuration values used by protocol decoders for every message. Values are resolved once for each protocol, so
+ * decoding doesn't need to build keys and look them up in configuration.
+ */
+public final class DecoderConfig {
+
+    private final String server;
+    private final String speedUnits;
+    private final int timeZoneOffset;
+    private final boolean ignoreSessionCache;
+    private final boolean registerUnknown;
+    private final boolean storeDisabled;
+    private final boolean saveEmpty;
+    private final boolean saveOriginal;
+    private final boolean batchPositions;
+
+    public DecoderConfig(Config config, String protocol) {
+        server = config.getString(Keys.PROTOCOL_SERVER.withPrefix(protocol));
+        speedUnits = config.getString(Keys.PROTOCOL_SPEED.withPrefix(protocol));
+        timeZoneOffset = config.getInteger(protocol + ".timezone", 0);
+        ignoreSessionCache = config.getBoolean(Keys.PROTOCOL_IGNORE_SESSION_CACHE.withPrefix(protocol))
+                || config.getBoolean(Keys.DECODER_IGNORE_SESSION_CACHE);
+        registerUnknown = config.getBoolean(Keys.DATABASE_REGISTER_UNKNOWN);
+        storeDisabled = config.getBoolean(Keys.DATABASE_STORE_DISABLED);
+        saveEmpty = config.getBoolean(Keys.DATABASE_SAVE_EMPTY);
+        saveOriginal = config.getBoolean(Keys.DATABASE_SAVE_ORIGINAL);
+        batchPositions = config.getBoolean(Keys.DECODER_BATCH_POSITIONS);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getSpeedUnits(String defaultUnits) {
+        return speedUnits != null ? speedUnits : defaultUnits;
+    }
+
+    public int getTimeZoneOffset() {
+        return timeZoneOffset;
+    }
+
+    public boolean getIgnoreSessionCache() {
+        return ignoreSessionCache;
+    }
+
+    public boolean getRegisterUnknown() {
+        return registerUnknown;
+    }
+
+    public boolean getStoreDisabled() {
+        return storeDisabled;
+    }
+
+    public boolean getSaveEmpty() {
+        return saveEmpty;
+    }
+
+    public boolean getSaveOriginal() {
+        return saveOriginal;
+    }
+
+    public boolean getBatchPositions() {
+        return batchPositions;
+    }
+
+}
@@ -26,12 +26,145 @@ public final class Keys {
     public static final ConfigSuffix PROTOCOL_TIMEOUT = new ConfigSuffix(
             ".timeout", Integer.class);
 
+    /**
+     * Server address sent to devices by protocols that report it in responses. If not set, local address of the
+     * connection is used.
+     */
+    public static final ConfigSuffix PROTOCOL_SERVER = new ConfigSuffix(
+            ".server", String.class);
+
+    /**
+     * Speed units reported by devices (kn, kmh, mps or mph). Overrides protocol default for protocols where units are
+     * configurable on the device.
+     */
+    public static final ConfigSuffix PROTOCOL_SPEED = new ConfigSuffix(
+            ".speed", String.class);
+
+    /**
+     * Identify device on every message instead of caching device session for the protocol.
+     */
+    public static final ConfigSuffix PROTOCOL_IGNORE_SESSION_CACHE = new ConfigSuffix(
+            ".ignoreSessionCache", Boolean.class);
+
+    /**
+     * Maximum number of messages per second accepted from one remote address or one device, checked before
+     * decoding. Excess UDP datagrams are dropped and reading from TCP connections is paused until the rate goes down.
+     * Disabled by default.
+     */
+    public static final ConfigSuffix PROTOCOL_RATE_LIMIT = new ConfigSuffix(
+            ".rateLimit", Double.class);
+
+    /**
+     * Outbound buffer size in bytes above which a channel is not writable. Queued commands are kept until the buffer
+     * drains. Netty default limits are used if not set.
+     */
+    public static final ConfigSuffix PROTOCOL_WRITE_BUFFER_HIGH = new ConfigSuffix(
+            ".writeBufferHigh", Integer.class);
+
+    /**
+     * Outbound buffer size in bytes below which a channel becomes writable again. Default is half of the high
+     * watermark.
+     */
+    public static final ConfigSuffix PROTOCOL_WRITE_BUFFER_LOW = new ConfigSuffix(
+            ".writeBufferLow", Integer.class);
+
+    /**
+     * Drop messages written to a channel that is not writable, like acknowledgements for devices on slow links,
+     * instead of accumulating them in memory. Disabled by default.
+     */
+    public static final ConfigSuffix PROTOCOL_DROP_UNWRITABLE = new ConfigSuffix(
+            ".dropUnwritable", Boolean.class);
+
     /**
      * Server wide connection timeout value in seconds. See protocol timeout for more information.
      */
     public static final ConfigKey SERVER_TIMEOUT = new ConfigKey(
             "server.timeout", Integer.class);
 
+    /**
+     * Server wide message rate limit. See protocol rate limit for more information.
+     */
+    public static final ConfigKey SERVER_RATE_LIMIT = new ConfigKey(
+            "server.rateLimit", Double.class);
+
+    /**
+     * Number of messages that can be received at once before the rate limit applies. Default is one second worth of
+     * messages.
+     */
+    public static final ConfigKey SERVER_RATE_BURST = new ConfigKey(
+            "server.rateBurst", Integer.class);
+
+    /**
+     * Close TCP connections that exceed the rate limit instead of slowing them down.
+     */
+    public static final ConfigKey SERVER_RATE_CLOSE = new ConfigKey(
+            "server.rateClose", Boolean.class);
+
+    /**
+     * Server wide outbound buffer high watermark. See protocol write buffer high watermark for more information.
+     */
+    public static final ConfigKey SERVER_WRITE_BUFFER_HIGH = new ConfigKey(
+            "server.writeBufferHigh", Integer.class);
+
+    /**
+     * Server wide outbound buffer low watermark.
+     */
+    public static final ConfigKey SERVER_WRITE_BUFFER_LOW = new ConfigKey(
+            "server.writeBufferLow", Integer.class);
+
+    /**
+     * Server wide setting for dropping messages written to channels that are not writable.
+     */
+    public static final ConfigKey SERVER_DROP_UNWRITABLE = new ConfigKey(
+            "server.dropUnwritable", Boolean.class);
+
+    /**
+     * Maximum number of flushes that are combined while reading from a channel, so acknowledgements for messages
+     * received together are sent with one system call. Disabled by default.
+     */
+    public static final ConfigKey SERVER_FLUSH_CONSOLIDATION = new ConfigKey(
+            "server.flushConsolidation", Integer.class);
+
+    /**
+     * Network transport implementation. Default value is "nio". On Linux it can be set to "epoll" to use native
+     * transport, which reduces system call and garbage collection overhead with large number of connections. If native
+     * library can't be loaded, server falls back to "nio".
+     */
+    public static final ConfigKey SERVER_TRANSPORT = new ConfigKey(
+            "server.transport", String.class);
+
+    /**
+     * Number of threads accepting new TCP connections. Default value is zero, which means two threads per CPU core.
+     */
+    public static final ConfigKey SERVER_BOSS_THREADS = new ConfigKey(
+            "server.bossThreads", Integer.class);
+
+    /**
+     * Number of network threads reading and decoding data from all connections. Default value is zero, which means
+     * two threads per CPU core.
+     */
+    public static final ConfigKey SERVER_WORKER_THREADS = new ConfigKey(
+            "server.workerThreads", Integer.class);
+
+    /**
+     * Number of sockets bound to the same port for each datagram protocol. Kernel distributes incoming packets
+     * between sockets using SO_REUSEPORT, so several worker threads can read UDP traffic of a single port. Requires
+     * epoll transport. Default value is one.
+     */
+    public static final ConfigKey SERVER_DATAGRAM_SOCKETS = new ConfigKey(
+            "server.datagramSockets", Integer.class);
+
+    /**
+     * Number of threads for processing decoded messages (filtering, storage, events and other handlers). Decoding
+     * always runs on network threads. Messages are assigned to processing threads by device, so positions of one
+     * device are handled in order even if they arrive over UDP or separate HTTP requests. Extra handlers are created
+     * for each channel, so they and the handlers after them run on one thread assigned to the channel. If the value
+     * is zero (default), processing runs on network threads as well, so slow database or external requests delay
+     * reading from other connections.
+     */
+    public static final ConfigKey SERVER_PROCESSING_THREADS = new ConfigKey(
+            "server.processingThreads", Integer.class);
+
     /**
      * Address for uploading aggregated anonymous usage statistics. Uploaded information is the same you can see on the
      * statistics screen in the web app. It does not include any sensitive (e.g. locations).
@@ -39,6 +172,45 @@ public final class Keys {
     public static final ConfigKey SERVER_STATISTICS = new ConfigKey(
             "server.statistics", Boolean.class);
 
+    /**
+     * Comma separated list of protocols for HEX traffic logging. By default traffic of all protocols is logged.
+     */
+    public static final ConfigKey LOGGER_TRAFFIC_PROTOCOLS = new ConfigKey(
+            "logger.trafficProtocols", String.class);
+
+    /**
+     * Comma separated list of device unique identifiers for HEX traffic logging. If set, only frames of connections
+     * that are already identified as one of these devices are logged.
+     */
+    public static final ConfigKey LOGGER_TRAFFIC_DEVICES = new ConfigKey(
+            "logger.trafficDevices", String.class);
+
+    /**
+     * Log only every n-th frame of each connection. Default value is 1, which means all frames are logged.
+     */
+    public static final ConfigKey LOGGER_TRAFFIC_SAMPLE = new ConfigKey(
+            "logger.trafficSample", Integer.class);
+
+    /**
+     * Write log records from a background thread, so logging never waits for disk. Records are dropped if the queue
+     * is full.
+     */
+    public static final ConfigKey LOGGER_ASYNC = new ConfigKey(
+            "logger.async", Boolean.class);
+
+    /**
+     * Maximum number of log records waiting to be written when asynchronous logging is enabled. Default is 10000.
+     */
+    public static final ConfigKey LOGGER_ASYNC_QUEUE_SIZE = new ConfigKey(
+            "logger.asyncQueueSize", Integer.class);
+
+    /**
+     * Interval in seconds for logging internal queue and throughput metrics, like position writer and API forwarding
+     * counters. Default value is 300. Zero disables metrics logging.
+     */
+    public static final ConfigKey LOGGER_METRICS_INTERVAL = new ConfigKey(
+            "logger.metricsInterval", Long.class);
+
     /**
      * Enable events subsystem. Flag to enable all events handlers.
      */
@@ -75,12 +247,196 @@ public final class Keys {
     public static final ConfigKey EXTRA_HANDLERS = new ConfigKey(
             "extra.handlers", String.class);
 
+    /**
+     * Identify device on every message instead of caching device session for all protocols.
+     */
+    public static final ConfigKey DECODER_IGNORE_SESSION_CACHE = new ConfigKey(
+            "decoder.ignoreSessionCache", Boolean.class);
+
+    /**
+     * Maximum number of cached device sessions for each connectionless protocol. Sessions are identified by device
+     * remote address. Least recently used sessions are removed when the limit is reached. Large caches are split
+     * into shards by address, each evicting when it reaches its equal part of the limit. Default value is 100000.
+     */
+    public static final ConfigKey DECODER_SESSION_CACHE_SIZE = new ConfigKey(
+            "decoder.sessionCacheSize", Integer.class);
+
+    /**
+     * Idle time in seconds after which cached session of connectionless protocol device expires. Expired session has
+     * to be identified again by the next message. Default value is 86400 (one day). Zero disables expiration.
+     */
+    public static final ConfigKey DECODER_SESSION_TIMEOUT = new ConfigKey(
+            "decoder.sessionTimeout", Long.class);
+
+    /**
+     * Pass positions of one device decoded from the same message through processing handlers together, store them
+     * with one insert and update the latest device position only once. Useful for protocols that upload buffered
+     * records in large packets. Extra handlers have to handle {@link org.traccar.PositionBatch} messages.
+     */
+    public static final ConfigKey DECODER_BATCH_POSITIONS = new ConfigKey(
+            "decoder.batchPositions", Boolean.class);
+
+    /**
+     * Automatically create devices for unknown identifiers.
+     */
+    public static final ConfigKey DATABASE_REGISTER_UNKNOWN = new ConfigKey(
+            "database.registerUnknown", Boolean.class);
+
+    /**
+     * Store positions and events of disabled devices.
+     */
+    public static final ConfigKey DATABASE_STORE_DISABLED = new ConfigKey(
+            "database.storeDisabled", Boolean.class);
+
+    /**
+     * Create position with last known location for messages that don't contain location, like heartbeats.
+     */
+    public static final ConfigKey DATABASE_SAVE_EMPTY = new ConfigKey(
+            "database.saveEmpty", Boolean.class);
+
     /**
      * Store original HEX or string data as "raw" attribute in the corresponding position.
      */
     public static final ConfigKey DATABASE_SAVE_ORIGINAL = new ConfigKey(
             "database.saveOriginal", Boolean.class);
 
+    /**
+     * Folder for binary capture files. If set, original data enabled by 'database.saveOriginal' is appended to capture
+     * files instead of being stored as HEX, and position gets only "capture" attribute referencing the record.
+     */
+    public static final ConfigKey CAPTURE_PATH = new ConfigKey(
+            "capture.path", String.class);
+
+    /**
+     * Size of each capture file in bytes. A new file is started when the current one is full. Default is 64 MB.
+     */
+    public static final ConfigKey CAPTURE_FILE_SIZE = new ConfigKey(
+            "capture.fileSize", Integer.class);
+
+    /**
+     * Maximum number of capture files to keep. When a new file is started, the oldest files above the limit are
+     * deleted together with their indexes. Zero keeps all files. Default is 16.
+     */
+    public static final ConfigKey CAPTURE_MAX_FILES = new ConfigKey(
+            "capture.maxFiles", Integer.class);
+
+    /**
+     * Maximum number of positions waiting to be inserted into the database. If the queue is full, processing threads
+     * wait for free space. Positions are only queued with "server.processingThreads", network threads insert them
+     * directly. Default value is 10000.
+     */
+    public static final ConfigKey DATABASE_INSERT_QUEUE_SIZE = new ConfigKey(
+            "database.insertQueueSize", Integer.class);
+
+    /**
+     * Maximum number of positions inserted with a single batch statement. Default value is 100.
+     */
+    public static final ConfigKey DATABASE_INSERT_BATCH_SIZE = new ConfigKey(
+            "database.insertBatchSize", Integer.class);
+
+    /**
+     * Number of rows fetched from the database at once when positions and events are streamed for reports and
+     * exports. Default value is 1000. Zero leaves the driver default, which reads the whole result into memory for
+     * some drivers. MySQL only uses the value with "useCursorFetch=true" connection option. Streamed API responses
+     * keep their database connection until the client has read the whole response, so slow clients hold pool
+     * connections longer; configure a read replica to keep them out of the primary pool.
+     */
+    public static final ConfigKey DATABASE_FETCH_SIZE = new ConfigKey(
+            "database.fetchSize", Integer.class);
+
+    /**
+     * Time in milliseconds to wait for more positions before inserting a batch that is not full. By default batch
+     * contains only positions that were already queued, so no additional latency is introduced.
+     */
+    public static final ConfigKey DATABASE_INSERT_BATCH_LATENCY = new ConfigKey(
+            "database.insertBatchLatency", Long.class);
+
+    /**
+     * Interval in milliseconds between batched device telemetry updates. Only the latest values for each device are
+     * written. Default value is 1000.
+     */
+    public static final ConfigKey DATABASE_TELEMETRY_FLUSH_INTERVAL = new ConfigKey(
+            "database.telemetry.flushInterval", Long.class);
+
+    /**
+     * Maximum number of device telemetry updates in a single batch. Reaching this number of pending devices also
+     * triggers an early flush. Default value is 500.
+     */
+    public static final ConfigKey DATABASE_TELEMETRY_FLUSH_SIZE = new ConfigKey(
+            "database.telemetry.flushSize", Integer.class);
+
+    /**
+     * JDBC URL of a read replica used for position, event and statistics history reads, including reports. Writes
+     * and cache loading always use the primary database. Replica uses the same driver as the primary database.
+     */
+    public static final ConfigKey DATABASE_REPLICA_URL = new ConfigKey(
+            "database.replica.url", String.class);
+
+    /**
+     * Read replica user. By default the primary database user is used.
+     */
+    public static final ConfigKey DATABASE_REPLICA_USER = new ConfigKey(
+            "database.replica.user", String.class);
+
+    /**
+     * Read replica password. By default the primary database password is used.
+     */
+    public static final ConfigKey DATABASE_REPLICA_PASSWORD = new ConfigKey(
+            "database.replica.password", String.class);
+
+    /**
+     * Maximum number of read replica connections. By default the connection pool default size is used.
+     */
+    public static final ConfigKey DATABASE_REPLICA_MAX_POOL_SIZE = new ConfigKey(
+            "database.replica.maxPoolSize", Integer.class);
+
+    /**
+     * Time in milliseconds to wait for a read replica connection from the pool. Default value is 30000.
+     */
+    public static final ConfigKey DATABASE_REPLICA_CONNECTION_TIMEOUT = new ConfigKey(
+            "database.replica.connectionTimeout", Long.class);
+
+    /**
+     * Time in milliseconds after which idle read replica connections are closed. Default value is 600000.
+     */
+    public static final ConfigKey DATABASE_REPLICA_IDLE_TIMEOUT = new ConfigKey(
+            "database.replica.idleTimeout", Long.class);
+
+    /**
+     * Maximum range of ids deleted with a single statement by the history cleanup. Smaller chunks hold locks for a
+     * shorter time. Default value is 10000. Overridden "database.deletePositions" and "database.deleteEvents" queries
+     * have to use ":fromId", ":toId" and ":time" parameters for chunking; older queries with only ":serverTime" still
+     * work, but delete the whole history in one statement and log a warning.
+     */
+    public static final ConfigKey DATABASE_CLEANUP_CHUNK_SIZE = new ConfigKey(
+            "database.cleanupChunkSize", Integer.class);
+
+    /**
+     * Pause in milliseconds between history cleanup chunks, which leaves database capacity to other queries. Default
+     * value is 1000.
+     */
+    public static final ConfigKey DATABASE_CLEANUP_PAUSE = new ConfigKey(
+            "database.cleanupPause", Long.class);
+
+    /**
+     * Partition period for positions and events tables, either "daily" or "monthly". Only PostgreSQL 11 or newer is
+     * supported. Enabling it converts existing tables into partitioned ones on startup. Existing rows become the
+     * legacy partition, and validating its range scans the whole table, which can take a long time for large tables,
+     * but does not block reads and writes; the table is locked exclusively only for the short conversion itself.
+     * Positions are partitioned by fix time and events by server time, so report queries only read relevant
+     * partitions, and history cleanup drops whole expired partitions. Rows are still deleted one by one from the
+     * legacy and default partitions and from the partition that contains the history limit, using the
+     * "database.deletePositionsPartitioned" query, which also requires fix time to be older than the history limit.
+     */
+    public static final ConfigKey DATABASE_PARTITION = new ConfigKey(
+            "database.partition", String.class);
+
+    /**
+     * Number of future partitions created in advance. Default value is 2.
+     */
+    public static final ConfigKey DATABASE_PARTITION_AHEAD = new ConfigKey(
+            "database.partitionAhead", Integer.class);
+
     /**
      * Enable positions forwarding to other web server.
      */
@@ -144,6 +500,39 @@ public final class Keys {
     public static final ConfigKey FORWARD_RETRY_LIMIT = new ConfigKey(
             "forward.retry.limit", Integer.class);
 
+    /**
+     * Base URL of the external position API. Device id, unique id, projected coordinates and speed are appended to
+     * the URL as path segments. Requests are sent by a background forwarder, never from the network threads.
+     */
+    public static final ConfigKey OUTPUT_API = new ConfigKey(
+            "output.api", String.class);
+
+    /**
+     * Maximum number of requests waiting to be sent to the external position API. When the queue is full new
+     * requests are dropped. Default value is 10000.
+     */
+    public static final ConfigKey OUTPUT_API_QUEUE_SIZE = new ConfigKey(
+            "output.api.queueSize", Integer.class);
+
+    /**
+     * Maximum number of queued requests a forwarding thread takes at once. Default value is 100.
+     */
+    public static final ConfigKey OUTPUT_API_BATCH_SIZE = new ConfigKey(
+            "output.api.batchSize", Integer.class);
+
+    /**
+     * Number of forwarding threads, which is also the maximum number of concurrent requests to the external position
+     * API. Default value is 4.
+     */
+    public static final ConfigKey OUTPUT_API_CONCURRENCY = new ConfigKey(
+            "output.api.concurrency", Integer.class);
+
+    /**
+     * Connect and read timeout for external position API requests in milliseconds. Default value is 5000.
+     */
+    public static final ConfigKey OUTPUT_API_TIMEOUT = new ConfigKey(
+            "output.api.timeout", Integer.class);
+
     /**
      * Boolean flag to enable or disable position filtering.
      */
@@ -292,6 +681,31 @@ public final class Keys {
     public static final ConfigKey PROCESSING_COMPUTED_ATTRIBUTES_DEVICE_ATTRIBUTES = new ConfigKey(
             "processing.computedAttributes.deviceAttributes", Boolean.class);
 
+    /**
+     * Age in seconds after which positions are handled as backlog, for example records buffered by a device while it
+     * was offline. With "decoder.batchPositions" enabled it only applies to positions decoded together with a newer
+     * one, so the newest position of a message is still processed as live; without it every position is checked.
+     * Positions older than the latest known device position are also handled as backlog. Backlog positions skip
+     * geolocation, geocoding, speed limit lookup and forwarding to the external position API, and events are not
+     * generated for them inline. Disabled by default.
+     */
+    public static final ConfigKey PROCESSING_BACKLOG_AGE = new ConfigKey(
+            "processing.backlog.age", Long.class);
+
+    /**
+     * Generate alert and command result events for backlog positions on a separate low priority thread. Events that
+     * depend on the current device state are not generated for backlog positions.
+     */
+    public static final ConfigKey PROCESSING_BACKLOG_EVENTS = new ConfigKey(
+            "processing.backlog.events", Boolean.class);
+
+    /**
+     * Maximum number of backlog positions waiting for event processing. Positions are skipped when the queue is
+     * full. Default is 10000.
+     */
+    public static final ConfigKey PROCESSING_BACKLOG_QUEUE_SIZE = new ConfigKey(
+            "processing.backlog.queueSize", Integer.class);
+
     /**
      * Boolean flag to enable or disable reverse geocoder.
      */
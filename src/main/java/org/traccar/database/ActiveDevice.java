@@ -16,7 +16,6 @@
 package org.traccar.database;
 
 import io.netty.channel.Channel;
-import io.netty.handler.codec.http.HttpRequestDecoder;
 import org.traccar.BasePipelineFactory;
 import org.traccar.Protocol;
 import org.traccar.model.Command;
@@ -36,7 +35,7 @@ public class ActiveDevice {
         this.protocol = protocol;
         this.channel = channel;
         this.remoteAddress = remoteAddress;
-        supportsLiveCommands = BasePipelineFactory.getHandler(channel.pipeline(), HttpRequestDecoder.class) == null;
+        supportsLiveCommands = !BasePipelineFactory.isHttp(channel);
     }
 
     public Channel getChannel() {
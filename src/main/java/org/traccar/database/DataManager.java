@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,12 +19,17 @@ import java.beans.Introspector;
 import java.io.File;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
@@ -40,10 +45,11 @@ import liquibase.resource.ResourceAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.Context;
-import org.traccar.helper.DateUtil;
 import org.traccar.model.Attribute;
 import org.traccar.model.Device;
+import org.traccar.model.DeviceTelemetry;
 import org.traccar.model.Driver;
 import org.traccar.model.Event;
 import org.traccar.model.Geofence;
@@ -77,10 +83,18 @@ public class DataManager {
 
     private DataSource dataSource;
 
+    private DataSource replicaDataSource;
+
     private boolean generateQueries;
 
     private final boolean forceLdap;
 
+    private volatile Boolean batchGeneratedKeys;
+
+    private PartitionManager partitionManager;
+
+    private final Set<String> legacyCleanupQueries = ConcurrentHashMap.newKeySet();
+
     public DataManager(Config config) throws Exception {
         this.config = config;
 
@@ -88,6 +102,7 @@ public class DataManager {
 
         initDatabase();
         initDatabaseSchema();
+        initPartitions();
     }
 
     private void initDatabase() throws Exception {
@@ -138,9 +153,41 @@ public class DataManager {
 
             dataSource = new HikariDataSource(hikariConfig);
 
+            if (config.hasKey(Keys.DATABASE_REPLICA_URL)) {
+
+                HikariConfig replicaConfig = new HikariConfig();
+                replicaConfig.setPoolName("replica");
+                replicaConfig.setDriverClassName(config.getString("database.driver"));
+                replicaConfig.setJdbcUrl(config.getString(Keys.DATABASE_REPLICA_URL));
+                replicaConfig.setUsername(
+                        config.getString(Keys.DATABASE_REPLICA_USER, config.getString("database.user")));
+                replicaConfig.setPassword(
+                        config.getString(Keys.DATABASE_REPLICA_PASSWORD, config.getString("database.password")));
+                replicaConfig.setConnectionInitSql(config.getString("database.checkConnection", "SELECT 1"));
+                replicaConfig.setIdleTimeout(config.getLong(Keys.DATABASE_REPLICA_IDLE_TIMEOUT, 600000));
+                replicaConfig.setConnectionTimeout(config.getLong(Keys.DATABASE_REPLICA_CONNECTION_TIMEOUT, 30000));
+                replicaConfig.setReadOnly(true);
+
+                int replicaPoolSize = config.getInteger(Keys.DATABASE_REPLICA_MAX_POOL_SIZE);
+                if (replicaPoolSize != 0) {
+                    replicaConfig.setMaximumPoolSize(replicaPoolSize);
+                }
+
+                replicaDataSource = new HikariDataSource(replicaConfig);
+
+            }
+
         }
     }
 
+    /**
+     * Returns data source for history reads, which is the replica if one is configured. Replicas can lag behind, so
+     * it should not be used for reads that have to see latest writes.
+     */
+    private DataSource getReadDataSource() {
+        return replicaDataSource != null ? replicaDataSource : dataSource;
+    }
+
     public static String constructObjectQuery(String action, Class<?> clazz, boolean extended) {
         switch (action) {
             case ACTION_INSERT:
@@ -307,12 +354,35 @@ public class DataManager {
             Liquibase liquibase = new Liquibase(
                     config.getString("database.changelog"), resourceAccessor, database);
 
+            liquibase.setChangeLogParameter("partition", String.valueOf(config.hasKey(Keys.DATABASE_PARTITION)));
+
             liquibase.clearCheckSums();
 
             liquibase.update(new Contexts());
         }
     }
 
+    private void initPartitions() throws SQLException {
+        String period = config.getString(Keys.DATABASE_PARTITION);
+        if (period != null) {
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")) {
+                    LOGGER.warn("Partitioning is only supported for PostgreSQL");
+                    return;
+                }
+            }
+            partitionManager = new PartitionManager(
+                    dataSource, period, config.getInteger(Keys.DATABASE_PARTITION_AHEAD, 2));
+            partitionManager.createPartitions();
+        }
+    }
+
+    public void updatePartitions() throws SQLException {
+        if (partitionManager != null) {
+            partitionManager.createPartitions();
+        }
+    }
+
     public User login(String email, String password) throws SQLException {
         User user = QueryBuilder.create(dataSource, getQuery("database.loginUser"))
                 .setString("email", email.trim())
@@ -340,13 +410,27 @@ public class DataManager {
     }
 
     public Collection<Position> getPositions(long deviceId, Date from, Date to) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectPositions"))
+        return QueryBuilder.create(getReadDataSource(), getQuery("database.selectPositions"))
                 .setLong("deviceId", deviceId)
                 .setDate("from", from)
                 .setDate("to", to)
                 .executeQuery(Position.class);
     }
 
+    /**
+     * Reads positions one by one without loading the whole range into memory.
+     */
+    public <E extends Exception> void getPositions(
+            long deviceId, Date from, Date to, QueryBuilder.ResultVisitor<Position, E> visitor)
+            throws SQLException, E {
+        QueryBuilder.create(getReadDataSource(), getQuery("database.selectPositions"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .setFetchSize(config.getInteger(Keys.DATABASE_FETCH_SIZE, 1000))
+                .executeQuery(Position.class, visitor);
+    }
+
     public void updateLatestPosition(Position position) throws SQLException {
         QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"))
                 .setDate("now", new Date())
@@ -354,40 +438,140 @@ public class DataManager {
                 .executeUpdate();
     }
 
+    public void updateDeviceTelemetry(Collection<DeviceTelemetry> telemetries) throws SQLException {
+        QueryBuilder builder = QueryBuilder.create(dataSource, getQuery("database.updateDeviceTelemetry"));
+        for (DeviceTelemetry telemetry : telemetries) {
+            builder.setLong("deviceId", telemetry.getDeviceId())
+                    .setDouble("latitude", telemetry.getLatitude())
+                    .setDouble("longitude", telemetry.getLongitude())
+                    .setDouble("standardLat", telemetry.getStandardLat())
+                    .setDouble("standardLon", telemetry.getStandardLon())
+                    .setInteger("apiResult", telemetry.getApiResult())
+                    .setDate("apiTime", telemetry.getApiTime());
+            if (telemetry.getBattery() != null) {
+                builder.setInteger("battery", telemetry.getBattery());
+            } else {
+                builder.setNull("battery", Types.INTEGER);
+            }
+            builder.addBatch();
+        }
+        builder.executeBatch();
+    }
+
     public Collection<Position> getLatestPositions() throws SQLException {
         return QueryBuilder.create(dataSource, getQuery("database.selectLatestPositions"))
                 .executeQuery(Position.class);
     }
 
-    public void clearHistory() throws SQLException {
+    /**
+     * Returns time before which history should be deleted or null if history is kept forever.
+     */
+    public Date getHistoryLimit() {
         long historyDays = config.getInteger("database.historyDays");
         if (historyDays != 0) {
-            Date timeLimit = new Date(System.currentTimeMillis() - historyDays * 24 * 3600 * 1000);
-            LOGGER.info("Clearing history earlier than " + DateUtil.formatDate(timeLimit, false));
-            QueryBuilder.create(dataSource, getQuery("database.deletePositions"))
-                    .setDate("serverTime", timeLimit)
-                    .executeUpdate();
-            QueryBuilder.create(dataSource, getQuery("database.deleteEvents"))
-                    .setDate("serverTime", timeLimit)
-                    .executeUpdate();
+            return new Date(System.currentTimeMillis() - historyDays * 24 * 3600 * 1000);
+        }
+        return null;
+    }
+
+    public void dropPartitions(Date timeLimit) throws SQLException {
+        if (partitionManager != null) {
+            partitionManager.dropPartitions(timeLimit);
         }
     }
 
+    /**
+     * Returns position with the lowest id that is not less than the given one.
+     */
+    public Position getNextPosition(long fromId) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectNextPosition"))
+                .setLong("id", fromId)
+                .executeQuerySingle(Position.class);
+    }
+
+    /**
+     * Returns event with the lowest id that is not less than the given one.
+     */
+    public Event getNextEvent(long fromId) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectNextEvent"))
+                .setLong("id", fromId)
+                .executeQuerySingle(Event.class);
+    }
+
+    /**
+     * Deletes positions in the id range with server time older than the given time, except latest device positions.
+     * Partitioned tables use a separate query that also limits fix time, which is the partition key, so the delete
+     * only reads partitions that start before the time.
+     *
+     * @return number of deleted positions
+     */
+    public long deletePositions(long fromId, long toId, Date time) throws SQLException {
+        String query = getCleanupQuery(partitionManager != null
+                ? "database.deletePositionsPartitioned" : "database.deletePositions");
+        return QueryBuilder.create(dataSource, query)
+                .setLong("fromId", fromId)
+                .setLong("toId", toId)
+                .setDate("time", time)
+                .setDate("serverTime", time)
+                .executeUpdate();
+    }
+
+    /**
+     * Deletes events in the id range with server time older than the given time.
+     *
+     * @return number of deleted events
+     */
+    public long deleteEvents(long fromId, long toId, Date time) throws SQLException {
+        return QueryBuilder.create(dataSource, getCleanupQuery("database.deleteEvents"))
+                .setLong("fromId", fromId)
+                .setLong("toId", toId)
+                .setDate("time", time)
+                .setDate("serverTime", time)
+                .executeUpdate();
+    }
+
+    /**
+     * Returns history cleanup query. Queries overridden before chunked cleanup only take the ":serverTime" parameter,
+     * which is still bound, but then the first chunk deletes the whole history in one statement.
+     */
+    private String getCleanupQuery(String key) {
+        String query = getQuery(key);
+        if (query != null && !query.toLowerCase().contains(":fromid") && legacyCleanupQueries.add(key)) {
+            LOGGER.warn("Query " + key + " does not use :fromId and :toId parameters,"
+                    + " history is deleted in a single statement");
+        }
+        return query;
+    }
+
     public Server getServer() throws SQLException {
         return QueryBuilder.create(dataSource, getQuery(ACTION_SELECT_ALL, Server.class))
                 .executeQuerySingle(Server.class);
     }
 
     public Collection<Event> getEvents(long deviceId, Date from, Date to) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectEvents"))
+        return QueryBuilder.create(getReadDataSource(), getQuery("database.selectEvents"))
                 .setLong("deviceId", deviceId)
                 .setDate("from", from)
                 .setDate("to", to)
                 .executeQuery(Event.class);
     }
 
+    /**
+     * Reads events one by one without loading the whole range into memory.
+     */
+    public <E extends Exception> void getEvents(
+            long deviceId, Date from, Date to, QueryBuilder.ResultVisitor<Event, E> visitor)
+            throws SQLException, E {
+        QueryBuilder.create(getReadDataSource(), getQuery("database.selectEvents"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .setFetchSize(config.getInteger(Keys.DATABASE_FETCH_SIZE, 1000))
+                .executeQuery(Event.class, visitor);
+    }
+
     public Collection<Statistics> getStatistics(Date from, Date to) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectStatistics"))
+        return QueryBuilder.create(getReadDataSource(), getQuery("database.selectStatistics"))
                 .setDate("from", from)
                 .setDate("to", to)
                 .executeQuery(Statistics.class);
@@ -458,6 +642,45 @@ public class DataManager {
                 .executeUpdate());
     }
 
+    private boolean isBatchGeneratedKeysSupported() throws SQLException {
+        if (batchGeneratedKeys == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                String product = connection.getMetaData().getDatabaseProductName();
+                batchGeneratedKeys = !product.contains("SQL Server"); // returns only the last key for a batch
+            }
+        }
+        return batchGeneratedKeys;
+    }
+
+    /**
+     * Inserts objects with one batch statement and sets their generated ids. If the driver returns an unexpected
+     * number of keys, the rows are already stored, so ids are left unset and later batches are inserted one by one.
+     */
+    public void addObjects(List<? extends BaseModel> entities) throws SQLException {
+        if (entities.size() <= 1 || !isBatchGeneratedKeysSupported()) {
+            for (BaseModel entity : entities) {
+                addObject(entity);
+            }
+        } else {
+            QueryBuilder builder = QueryBuilder.create(
+                    dataSource, getQuery(ACTION_INSERT, entities.get(0).getClass()), true);
+            for (BaseModel entity : entities) {
+                builder.setObject(entity).addBatch();
+            }
+            List<Long> ids = builder.executeBatchGeneratedKeys();
+            if (ids.size() == entities.size()) {
+                Iterator<Long> iterator = ids.iterator();
+                for (BaseModel entity : entities) {
+                    entity.setId(iterator.next());
+                }
+            } else {
+                LOGGER.warn("Expected " + entities.size() + " generated keys, got " + ids.size()
+                        + ", rows are stored without ids, inserting one by one from now on");
+                batchGeneratedKeys = false;
+            }
+        }
+    }
+
     public void updateObject(BaseModel entity) throws SQLException {
         QueryBuilder.create(dataSource, getQuery(ACTION_UPDATE, entity.getClass()))
                 .setObject(entity)
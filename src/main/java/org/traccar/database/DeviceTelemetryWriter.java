@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.DeviceTelemetry;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects device telemetry updates and writes them to the database in batches. Only the latest update for each
+ * device is kept between flushes, so devices reporting more often than the flush interval produce a single row
+ * update per interval.
+ */
+public class DeviceTelemetryWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceTelemetryWriter.class);
+
+    private final DataManager dataManager;
+    private final int flushSize;
+
+    private final Map<Long, DeviceTelemetry> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public DeviceTelemetryWriter(Config config, DataManager dataManager) {
+        this.dataManager = dataManager;
+        flushSize = config.getInteger(Keys.DATABASE_TELEMETRY_FLUSH_SIZE, 500);
+        long flushInterval = config.getLong(Keys.DATABASE_TELEMETRY_FLUSH_INTERVAL, 1000);
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("DeviceTelemetryWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void update(DeviceTelemetry telemetry) {
+        received.incrementAndGet();
+        pending.merge(telemetry.getDeviceId(), telemetry, DeviceTelemetryWriter::selectNewest);
+        if (pending.size() >= flushSize && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Keeps the update for the later fix, because API callbacks for consecutive positions can complete out of order.
+     */
+    private static DeviceTelemetry selectNewest(DeviceTelemetry current, DeviceTelemetry update) {
+        if (current.getFixTime() != null && update.getFixTime() != null
+                && update.getFixTime().before(current.getFixTime())) {
+            return current;
+        }
+        return update;
+    }
+
+    DeviceTelemetry getPending(long deviceId) {
+        return pending.get(deviceId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<DeviceTelemetry> batch = new ArrayList<>(flushSize);
+        Iterator<Long> iterator = pending.keySet().iterator();
+        while (iterator.hasNext()) {
+            DeviceTelemetry telemetry = pending.remove(iterator.next());
+            if (telemetry != null) {
+                batch.add(telemetry);
+            }
+            if (batch.size() >= flushSize || !iterator.hasNext() && !batch.isEmpty()) {
+                try {
+                    dataManager.updateDeviceTelemetry(batch);
+                    written.addAndGet(batch.size());
+                } catch (SQLException | RuntimeException error) {
+                    LOGGER.warn("Failed to update device telemetry", error);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains range partitions of positions and events tables created by the partitioning changelog. Partitions are
+ * named after the table and the period start, for example "tc_positions_p20200315" or "tc_positions_p202003".
+ * Legacy data stays in the partition attached during conversion and rows outside of created ranges go to the default
+ * partition, so both are never dropped, and history cleanup still deletes rows from them.
+ */
+public class PartitionManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionManager.class);
+
+    public static final String PERIOD_DAILY = "daily";
+    public static final String PERIOD_MONTHLY = "monthly";
+
+    private static final String[] TABLES = {"tc_positions", "tc_events"};
+    private static final String[] PARTITION_KEYS = {"fixtime", "servertime"};
+
+    private final DataSource dataSource;
+    private final boolean daily;
+    private final int ahead;
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    public PartitionManager(DataSource dataSource, String period, int ahead) {
+        if (!PERIOD_DAILY.equals(period) && !PERIOD_MONTHLY.equals(period)) {
+            throw new IllegalArgumentException("Unknown partition period " + period);
+        }
+        this.dataSource = dataSource;
+        this.daily = PERIOD_DAILY.equals(period);
+        this.ahead = ahead;
+    }
+
+    Date getPeriodStart(Date time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(time);
+        if (!daily) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    Date getNextPeriod(Date periodStart) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(periodStart);
+        calendar.add(daily ? Calendar.DAY_OF_MONTH : Calendar.MONTH, 1);
+        return calendar.getTime();
+    }
+
+    private SimpleDateFormat getNameFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(daily ? "yyyyMMdd" : "yyyyMM");
+        format.setLenient(false);
+        return format;
+    }
+
+    String getPartitionName(String table, Date periodStart) {
+        return table + "_p" + getNameFormat().format(periodStart);
+    }
+
+    /**
+     * Returns period start for a partition managed by this class or null for any other partition.
+     */
+    Date parsePartitionName(String table, String name) {
+        String prefix = table + "_p";
+        String suffix = name.substring(Math.min(prefix.length(), name.length()));
+        if (!name.startsWith(prefix) || suffix.length() != (daily ? 8 : 6)) {
+            return null;
+        }
+        try {
+            return getNameFormat().parse(suffix);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static String formatBound(Date time) {
+        return "'" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(time) + "'";
+    }
+
+    private List<String> getPartitions(Connection connection, String table) throws SQLException {
+        List<String> result = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT child.relname FROM pg_inherits "
+                        + "JOIN pg_class parent ON pg_inherits.inhparent = parent.oid "
+                        + "JOIN pg_class child ON pg_inherits.inhrelid = child.oid "
+                        + "WHERE parent.relname = ?")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(resultSet.getString(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates partitions for the current period and configured number of future periods. Periods overlapping the
+     * legacy partition can't be created, their rows are stored in the default partition.
+     */
+    public void createPartitions() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (int i = 0; i < TABLES.length; i++) {
+                List<String> existing = getPartitions(connection, TABLES[i]);
+                Date periodStart = getPeriodStart(new Date());
+                for (int j = 0; j <= ahead; j++) {
+                    Date periodEnd = getNextPeriod(periodStart);
+                    String name = getPartitionName(TABLES[i], periodStart);
+                    if (!existing.contains(name)) {
+                        try {
+                            createPartition(connection, TABLES[i], PARTITION_KEYS[i], name, periodStart, periodEnd);
+                            failed.remove(name);
+                        } catch (SQLException e) {
+                            if (failed.add(name)) {
+                                LOGGER.warn("Partition " + name + " not created - " + e.getMessage());
+                            }
+                        }
+                    }
+                    periodStart = periodEnd;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a partition for the range. Rows already stored in the default partition for the range, for example
+     * positions with fix time in the future, would make the creation fail, so in that case the default partition is
+     * detached while the rows are moved into the new partition.
+     */
+    private void createPartition(
+            Connection connection, String table, String key, String name, Date from, Date to) throws SQLException {
+        String defaultName = table + "_default";
+        String condition = key + " >= " + formatBound(from) + " AND " + key + " < " + formatBound(to);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            boolean conflict;
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT 1 FROM " + defaultName + " WHERE " + condition + " LIMIT 1")) {
+                conflict = resultSet.next();
+            }
+            if (conflict) {
+                statement.execute("ALTER TABLE " + table + " DETACH PARTITION " + defaultName);
+            }
+            statement.execute("CREATE TABLE " + name + " PARTITION OF " + table
+                    + " FOR VALUES FROM (" + formatBound(from) + ") TO (" + formatBound(to) + ")");
+            if (conflict) {
+                int count = statement.executeUpdate(
+                        "INSERT INTO " + table + " SELECT * FROM " + defaultName + " WHERE " + condition);
+                statement.execute("DELETE FROM " + defaultName + " WHERE " + condition);
+                statement.execute("ALTER TABLE " + table + " ATTACH PARTITION " + defaultName + " DEFAULT");
+                LOGGER.info("Moved " + count + " rows from " + defaultName + " to " + name);
+            }
+            connection.commit();
+            LOGGER.info("Created partition " + name);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Drops partitions that only contain data older than the time limit. Positions that are still referenced as
+     * latest device positions are moved to the default partition first.
+     */
+    public void dropPartitions(Date timeLimit) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (String table : TABLES) {
+                for (String name : getPartitions(connection, table)) {
+                    Date periodStart = parsePartitionName(table, name);
+                    if (periodStart != null && !getNextPeriod(periodStart).after(timeLimit)) {
+                        dropPartition(connection, table, name);
+                    }
+                }
+            }
+        }
+    }
+
+    private void dropPartition(Connection connection, String table, String name) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " DETACH PARTITION " + name);
+            if (table.equals("tc_positions")) {
+                statement.execute("INSERT INTO " + table + " SELECT * FROM " + name
+                        + " WHERE id IN (SELECT positionId FROM tc_devices WHERE positionId IS NOT NULL)");
+            }
+            statement.execute("DROP TABLE " + name);
+            connection.commit();
+            LOGGER.info("Dropped partition " + name);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+}
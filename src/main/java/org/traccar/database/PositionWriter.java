@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores positions in batches from a single background thread. Positions queued by all processing threads while the
+ * previous batch is being written are inserted together with one statement, so connection borrowing and statement
+ * preparation are paid once per batch instead of once per position. The returned future completes after the
+ * position has been stored and its generated id is set.
+ */
+public class PositionWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionWriter.class);
+
+    private static final class Entry {
+
+        private final List<Position> positions;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Entry(List<Position> positions) {
+            this.positions = positions;
+        }
+
+    }
+
+    private final DataManager dataManager;
+    private final int batchSize;
+    private final long batchLatency;
+    private final BlockingQueue<Entry> queue;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong flushTime = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastFlushTime;
+
+    public PositionWriter(Config config, DataManager dataManager) {
+        this.dataManager = dataManager;
+        batchSize = config.getInteger(Keys.DATABASE_INSERT_BATCH_SIZE, 100);
+        batchLatency = config.getLong(Keys.DATABASE_INSERT_BATCH_LATENCY);
+        queue = new ArrayBlockingQueue<>(config.getInteger(Keys.DATABASE_INSERT_QUEUE_SIZE, 10000));
+
+        Thread thread = new Thread(this::process);
+        thread.setName("PositionWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public CompletableFuture<Position> store(Position position) {
+        return store(Collections.singletonList(position)).thenApply(ignore -> position);
+    }
+
+    /**
+     * Queues positions as one entry, so they are always inserted by the same batch. Entries complete in the order
+     * they were queued. If the queue is full, the calling thread waits for free space.
+     */
+    public CompletableFuture<Void> store(List<Position> positions) {
+        Entry entry = new Entry(positions);
+        if (!queue.offer(entry)) {
+            overflows.incrementAndGet();
+            try {
+                queue.put(entry);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                entry.future.completeExceptionally(error);
+            }
+        }
+        return entry.future;
+    }
+
+    /**
+     * Stores positions in the calling thread, for callers that can't continue asynchronously.
+     */
+    public void storeNow(List<Position> positions) throws SQLException {
+        dataManager.addObjects(positions);
+        stored.addAndGet(positions.size());
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getStoredCount() {
+        return stored.get();
+    }
+
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public long getLastFlushTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushTime);
+    }
+
+    public double getAverageFlushTime() {
+        long count = batches.get();
+        return count > 0 ? TimeUnit.NANOSECONDS.toMicros(flushTime.get()) / 1000.0 / count : 0;
+    }
+
+    private void process() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                if (batchLatency > 0) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchLatency);
+                    while (batch.size() < batchSize) {
+                        Entry entry = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (entry == null) {
+                            break;
+                        }
+                        batch.add(entry);
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        long start = System.nanoTime();
+
+        List<Position> positions = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            positions.addAll(entry.positions);
+        }
+
+        Exception[] errors = new Exception[batch.size()];
+        int count = 0;
+        try {
+            dataManager.addObjects(positions);
+            count = positions.size();
+        } catch (RuntimeException error) {
+            Arrays.fill(errors, error);
+        } catch (SQLException batchError) {
+            LOGGER.warn("Batch insert failed, storing positions one by one", batchError); // batch is rolled back
+            for (int i = 0; i < batch.size(); i++) {
+                for (Position position : batch.get(i).positions) {
+                    try {
+                        dataManager.addObject(position);
+                        count += 1;
+                    } catch (SQLException | RuntimeException error) {
+                        errors[i] = error;
+                    }
+                }
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        batches.incrementAndGet();
+        stored.addAndGet(count);
+        flushTime.addAndGet(time);
+        lastBatchSize = positions.size();
+        lastFlushTime = time;
+
+        for (int i = 0; i < batch.size(); i++) { // complete after metrics, so they include completed positions
+            if (errors[i] == null) {
+                batch.get(i).future.complete(null);
+            } else {
+                batch.get(i).future.completeExceptionally(errors[i]);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,8 +23,9 @@ import org.traccar.model.MiscFormatter;
 import org.traccar.model.Permission;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -34,6 +35,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -41,34 +43,156 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class QueryBuilder {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryBuilder.class);
 
-    private final Map<String, List<Integer>> indexMap = new HashMap<>();
+    private static final int QUERY_CACHE_SIZE = 1000;
+    private static final int[] NO_INDEXES = new int[0];
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * Model property accessed through a getter or a setter method handle adapted to generic types.
+     */
+    private static final class Property {
+
+        private final String name;
+        private final Class<?> type;
+        private final MethodHandle handle;
+
+        private Property(String name, Class<?> type, MethodHandle handle) {
+            this.name = name;
+            this.type = type;
+            this.handle = handle;
+        }
+
+    }
+
+    private static final ClassValue<List<Property>> GETTERS = new ClassValue<List<Property>>() {
+        @Override
+        protected List<Property> computeValue(Class<?> clazz) {
+            return findProperties(clazz, "get", 0);
+        }
+    };
+
+    private static final ClassValue<List<Property>> SETTERS = new ClassValue<List<Property>>() {
+        @Override
+        protected List<Property> computeValue(Class<?> clazz) {
+            return findProperties(clazz, "set", 1);
+        }
+    };
+
+    private static final class Binder {
+
+        private final Property property;
+        private final int[] indexes;
+
+        private Binder(Property property, int[] indexes) {
+            this.property = property;
+            this.indexes = indexes;
+        }
+
+    }
+
+    private static final class RowMapper {
+
+        private final MethodHandle constructor;
+        private final List<ResultSetProcessor<Object>> processors;
+
+        private RowMapper(MethodHandle constructor, List<ResultSetProcessor<Object>> processors) {
+            this.constructor = constructor;
+            this.processors = processors;
+        }
+
+    }
+
+    /**
+     * Query with named parameters replaced by positional ones. Parameter binders and row mappers are built once for
+     * each model class used with the query.
+     */
+    private static final class ParsedQuery {
+
+        private final String sql;
+        private final Map<String, int[]> indexes;
+        private final Map<Class<?>, List<Binder>> binders = new ConcurrentHashMap<>();
+        private final Map<Class<?>, RowMapper> mappers = new ConcurrentHashMap<>();
+
+        private ParsedQuery(String sql, Map<String, int[]> indexes) {
+            this.sql = sql;
+            this.indexes = indexes;
+        }
+
+    }
+
+    private static final Map<String, ParsedQuery> QUERY_CACHE = new ConcurrentHashMap<>();
+
+    private final ParsedQuery parsedQuery;
     private Connection connection;
     private PreparedStatement statement;
     private final String query;
     private final boolean returnGeneratedKeys;
+    private int fetchSize;
 
     private QueryBuilder(DataSource dataSource, String query, boolean returnGeneratedKeys) throws SQLException {
         this.query = query;
         this.returnGeneratedKeys = returnGeneratedKeys;
         if (query != null) {
+            parsedQuery = parse(query.trim());
             connection = dataSource.getConnection();
-            String parsedQuery = parse(query.trim(), indexMap);
             try {
                 if (returnGeneratedKeys) {
-                    statement = connection.prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
+                    statement = connection.prepareStatement(parsedQuery.sql, Statement.RETURN_GENERATED_KEYS);
                 } else {
-                    statement = connection.prepareStatement(parsedQuery);
+                    statement = connection.prepareStatement(parsedQuery.sql);
                 }
             } catch (SQLException error) {
                 connection.close();
                 throw error;
             }
+        } else {
+            parsedQuery = null;
+        }
+    }
+
+    private static List<Property> findProperties(Class<?> clazz, String prefix, int parameterCount) {
+        List<Property> properties = new ArrayList<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().startsWith(prefix) && method.getParameterTypes().length == parameterCount
+                    && !method.isAnnotationPresent(QueryIgnore.class)) {
+                try {
+                    MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+                    properties.add(new Property(
+                            method.getName().substring(3),
+                            parameterCount == 0 ? method.getReturnType() : method.getParameterTypes()[0],
+                            handle.asType(parameterCount == 0 ? GETTER_TYPE : SETTER_TYPE)));
+                } catch (IllegalAccessException error) {
+                    LOGGER.warn("Property access error", error);
+                }
+            }
+        }
+        return properties;
+    }
+
+    private static ParsedQuery parse(String query) {
+        ParsedQuery parsedQuery = QUERY_CACHE.get(query);
+        if (parsedQuery == null) {
+            Map<String, List<Integer>> indexMap = new HashMap<>();
+            String sql = parse(query, indexMap);
+            Map<String, int[]> indexes = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : indexMap.entrySet()) {
+                indexes.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            parsedQuery = new ParsedQuery(sql, indexes);
+            if (QUERY_CACHE.size() < QUERY_CACHE_SIZE) {
+                QUERY_CACHE.putIfAbsent(query, parsedQuery);
+            }
         }
+        return parsedQuery;
     }
 
     private static String parse(String query, Map<String, List<Integer>> paramMap) {
@@ -136,36 +260,45 @@ public final class QueryBuilder {
         return new QueryBuilder(dataSource, query, returnGeneratedKeys);
     }
 
-    private List<Integer> indexes(String name) {
-        name = name.toLowerCase();
-        List<Integer> result = indexMap.get(name);
-        if (result == null) {
-            result = new LinkedList<>();
+    private int[] indexes(String name) {
+        if (parsedQuery == null) {
+            return NO_INDEXES;
         }
-        return result;
+        int[] result = parsedQuery.indexes.get(name.toLowerCase());
+        return result != null ? result : NO_INDEXES;
+    }
+
+    private SQLException closeOnError(SQLException error) throws SQLException {
+        statement.close();
+        connection.close();
+        return error;
     }
 
     public QueryBuilder setBoolean(String name, boolean value) throws SQLException {
-        for (int i : indexes(name)) {
+        return setBoolean(indexes(name), value);
+    }
+
+    private QueryBuilder setBoolean(int[] indexes, boolean value) throws SQLException {
+        for (int i : indexes) {
             try {
                 statement.setBoolean(i, value);
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
     }
 
     public QueryBuilder setInteger(String name, int value) throws SQLException {
-        for (int i : indexes(name)) {
+        return setInteger(indexes(name), value);
+    }
+
+    private QueryBuilder setInteger(int[] indexes, int value) throws SQLException {
+        for (int i : indexes) {
             try {
                 statement.setInt(i, value);
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
@@ -176,7 +309,11 @@ public final class QueryBuilder {
     }
 
     public QueryBuilder setLong(String name, long value, boolean nullIfZero) throws SQLException {
-        for (int i : indexes(name)) {
+        return setLong(indexes(name), value, nullIfZero);
+    }
+
+    private QueryBuilder setLong(int[] indexes, long value, boolean nullIfZero) throws SQLException {
+        for (int i : indexes) {
             try {
                 if (value == 0 && nullIfZero) {
                     statement.setNull(i, Types.INTEGER);
@@ -184,29 +321,47 @@ public final class QueryBuilder {
                     statement.setLong(i, value);
                 }
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
     }
 
     public QueryBuilder setDouble(String name, double value) throws SQLException {
-        for (int i : indexes(name)) {
+        return setDouble(indexes(name), value);
+    }
+
+    private QueryBuilder setDouble(int[] indexes, double value) throws SQLException {
+        for (int i : indexes) {
             try {
                 statement.setDouble(i, value);
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
     }
 
-    public QueryBuilder setString(String name, String value) throws SQLException {
+    /**
+     * Binds a typed null, which databases like PostgreSQL require when the parameter type can't be inferred.
+     */
+    public QueryBuilder setNull(String name, int sqlType) throws SQLException {
         for (int i : indexes(name)) {
+            try {
+                statement.setNull(i, sqlType);
+            } catch (SQLException error) {
+                throw closeOnError(error);
+            }
+        }
+        return this;
+    }
+
+    public QueryBuilder setString(String name, String value) throws SQLException {
+        return setString(indexes(name), value);
+    }
+
+    private QueryBuilder setString(int[] indexes, String value) throws SQLException {
+        for (int i : indexes) {
             try {
                 if (value == null) {
                     statement.setNull(i, Types.VARCHAR);
@@ -214,16 +369,18 @@ public final class QueryBuilder {
                     statement.setString(i, value);
                 }
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
     }
 
     public QueryBuilder setDate(String name, Date value) throws SQLException {
-        for (int i : indexes(name)) {
+        return setDate(indexes(name), value);
+    }
+
+    private QueryBuilder setDate(int[] indexes, Date value) throws SQLException {
+        for (int i : indexes) {
             try {
                 if (value == null) {
                     statement.setNull(i, Types.TIMESTAMP);
@@ -231,16 +388,18 @@ public final class QueryBuilder {
                     statement.setTimestamp(i, new Timestamp(value.getTime()));
                 }
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
     }
 
     public QueryBuilder setBlob(String name, byte[] value) throws SQLException {
-        for (int i : indexes(name)) {
+        return setBlob(indexes(name), value);
+    }
+
+    private QueryBuilder setBlob(int[] indexes, byte[] value) throws SQLException {
+        for (int i : indexes) {
             try {
                 if (value == null) {
                     statement.setNull(i, Types.BLOB);
@@ -248,46 +407,63 @@ public final class QueryBuilder {
                     statement.setBytes(i, value);
                 }
             } catch (SQLException error) {
-                statement.close();
-                connection.close();
-                throw error;
+                throw closeOnError(error);
             }
         }
         return this;
     }
 
+    private static List<Binder> createBinders(ParsedQuery parsedQuery, Class<?> clazz) {
+        List<Binder> binders = new ArrayList<>();
+        for (Property property : GETTERS.get(clazz)) {
+            int[] indexes = parsedQuery.indexes.get(property.name.toLowerCase());
+            if (indexes != null) {
+                binders.add(new Binder(property, indexes));
+            }
+        }
+        return binders;
+    }
+
     public QueryBuilder setObject(Object object) throws SQLException {
+        if (parsedQuery == null) {
+            return this;
+        }
 
-        Method[] methods = object.getClass().getMethods();
+        List<Binder> binders = parsedQuery.binders.computeIfAbsent(
+                object.getClass(), clazz -> createBinders(parsedQuery, clazz));
 
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
-                    && !method.isAnnotationPresent(QueryIgnore.class)) {
-                String name = method.getName().substring(3);
+        for (Binder binder : binders) {
+            Class<?> type = binder.property.type;
+            int[] indexes = binder.indexes;
+            Object value;
+            try {
+                value = (Object) binder.property.handle.invokeExact(object);
+            } catch (Throwable error) {
+                LOGGER.warn("Get property error", error);
+                continue;
+            }
+            if (type.equals(boolean.class)) {
+                setBoolean(indexes, (Boolean) value);
+            } else if (type.equals(int.class)) {
+                setInteger(indexes, (Integer) value);
+            } else if (type.equals(long.class)) {
+                setLong(indexes, (Long) value, binder.property.name.endsWith("Id"));
+            } else if (type.equals(double.class)) {
+                setDouble(indexes, (Double) value);
+            } else if (type.equals(String.class)) {
+                setString(indexes, (String) value);
+            } else if (type.equals(Date.class)) {
+                setDate(indexes, (Date) value);
+            } else if (type.equals(byte[].class)) {
+                setBlob(indexes, (byte[]) value);
+            } else {
                 try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        setBoolean(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        setInteger(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        setLong(name, (Long) method.invoke(object), name.endsWith("Id"));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        setDouble(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        setString(name, (String) method.invoke(object));
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        setDate(name, (Date) method.invoke(object));
-                    } else if (method.getReturnType().equals(byte[].class)) {
-                        setBlob(name, (byte[]) method.invoke(object));
+                    if (type.equals(Map.class) && Context.getConfig().getBoolean("database.xml")) {
+                        setString(indexes, MiscFormatter.toXmlString((Map) value));
                     } else {
-                        if (method.getReturnType().equals(Map.class)
-                                && Context.getConfig().getBoolean("database.xml")) {
-                            setString(name, MiscFormatter.toXmlString((Map) method.invoke(object)));
-                        } else {
-                            setString(name, Context.getObjectMapper().writeValueAsString(method.invoke(object)));
-                        }
+                        setString(indexes, Context.getObjectMapper().writeValueAsString(value));
                     }
-                } catch (IllegalAccessException | InvocationTargetException | JsonProcessingException error) {
+                } catch (JsonProcessingException error) {
                     LOGGER.warn("Get property error", error);
                 }
             }
@@ -297,7 +473,7 @@ public final class QueryBuilder {
     }
 
     private interface ResultSetProcessor<T> {
-        void process(T object, ResultSet resultSet) throws SQLException;
+        void process(T object, ResultSet resultSet) throws Throwable;
     }
 
     public <T> T executeQuerySingle(Class<T> clazz) throws SQLException {
@@ -309,142 +485,166 @@ public final class QueryBuilder {
         }
     }
 
-    private <T> void addProcessors(
-            List<ResultSetProcessor<T>> processors,
-            final Class<?> parameterType, final Method method, final String name) {
+    private static void addProcessor(
+            List<ResultSetProcessor<Object>> processors, final Class<?> parameterType, final MethodHandle setter,
+            final int column) {
 
         if (parameterType.equals(boolean.class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBoolean(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
+                setter.invokeExact(object, (Object) resultSet.getBoolean(column));
             });
         } else if (parameterType.equals(int.class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getInt(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
+                setter.invokeExact(object, (Object) resultSet.getInt(column));
             });
         } else if (parameterType.equals(long.class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getLong(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
+                setter.invokeExact(object, (Object) resultSet.getLong(column));
             });
         } else if (parameterType.equals(double.class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getDouble(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
+                setter.invokeExact(object, (Object) resultSet.getDouble(column));
             });
         } else if (parameterType.equals(String.class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getString(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
+                setter.invokeExact(object, (Object) resultSet.getString(column));
             });
         } else if (parameterType.equals(Date.class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    Timestamp timestamp = resultSet.getTimestamp(name);
-                    if (timestamp != null) {
-                        method.invoke(object, new Date(timestamp.getTime()));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
+                Timestamp timestamp = resultSet.getTimestamp(column);
+                if (timestamp != null) {
+                    setter.invokeExact(object, (Object) new Date(timestamp.getTime()));
                 }
             });
         } else if (parameterType.equals(byte[].class)) {
             processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBytes(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
+                setter.invokeExact(object, (Object) resultSet.getBytes(column));
             });
         } else {
             processors.add((object, resultSet) -> {
-                String value = resultSet.getString(name);
+                String value = resultSet.getString(column);
                 if (value != null && !value.isEmpty()) {
-                    try {
-                        method.invoke(object, Context.getObjectMapper().readValue(value, parameterType));
-                    } catch (InvocationTargetException | IllegalAccessException | IOException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
+                    setter.invokeExact(object, Context.getObjectMapper().readValue(value, parameterType));
                 }
             });
         }
     }
 
-    public <T> Collection<T> executeQuery(Class<T> clazz) throws SQLException {
-        List<T> result = new LinkedList<>();
+    /**
+     * Matches setters of the class with result columns by label. Columns are then read by index.
+     */
+    private static RowMapper createRowMapper(Class<?> clazz, ResultSetMetaData resultMetaData) throws SQLException {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = resultMetaData.getColumnCount(); i >= 1; i--) {
+            columns.put(resultMetaData.getColumnLabel(i).toLowerCase(), i);
+        }
 
-        if (query != null) {
+        List<ResultSetProcessor<Object>> processors = new ArrayList<>();
+        for (Property property : SETTERS.get(clazz)) {
+            Integer column = columns.get(property.name.toLowerCase());
+            if (column != null) {
+                addProcessor(processors, property.type, property.handle, column);
+            }
+        }
 
-            try {
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(clazz, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return new RowMapper(constructor, processors);
+    }
 
-                try (ResultSet resultSet = statement.executeQuery()) {
+    /**
+     * Receives query results one row at a time.
+     */
+    public interface ResultVisitor<T, E extends Exception> {
+        void visit(T object) throws E;
+    }
 
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
+    /**
+     * Sets number of rows the driver fetches from the database at once. Drivers that read the whole result by
+     * default, like PostgreSQL, only use it outside of auto-commit mode, so it is disabled while the query runs.
+     */
+    public QueryBuilder setFetchSize(int fetchSize) throws SQLException {
+        this.fetchSize = fetchSize;
+        if (query != null && fetchSize != 0) {
+            try {
+                statement.setFetchSize(fetchSize);
+            } catch (SQLException error) {
+                throw closeOnError(error);
+            }
+        }
+        return this;
+    }
 
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
+    public <T> Collection<T> executeQuery(Class<T> clazz) throws SQLException {
+        List<T> result = new LinkedList<>();
+        executeQuery(clazz, result::add);
+        return result;
+    }
 
-                    Method[] methods = clazz.getMethods();
+    /**
+     * Passes result objects to the visitor as rows are read, so they don't have to be kept in memory together.
+     */
+    public <T, E extends Exception> void executeQuery(
+            Class<T> clazz, ResultVisitor<T, E> visitor) throws SQLException, E {
 
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1
-                                && !method.isAnnotationPresent(QueryIgnore.class)) {
+        if (query != null) {
 
-                            final String name = method.getName().substring(3);
+            boolean autoCommit = fetchSize > 0 && connection.getAutoCommit();
+            try {
+                if (autoCommit) {
+                    connection.setAutoCommit(false);
+                }
 
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
+                try (ResultSet resultSet = statement.executeQuery()) {
 
-                            addProcessors(processors, method.getParameterTypes()[0], method, name);
-                        }
+                    RowMapper rowMapper = parsedQuery.mappers.get(clazz);
+                    if (rowMapper == null) {
+                        rowMapper = createRowMapper(clazz, resultSet.getMetaData());
+                        parsedQuery.mappers.putIfAbsent(clazz, rowMapper);
                     }
 
                     while (resultSet.next()) {
+                        Object object;
                         try {
-                            T object = clazz.getDeclaredConstructor().newInstance();
-                            for (ResultSetProcessor<T> processor : processors) {
+                            object = (Object) rowMapper.constructor.invokeExact();
+                        } catch (Throwable e) {
+                            throw new IllegalArgumentException(e);
+                        }
+                        for (ResultSetProcessor<Object> processor : rowMapper.processors) {
+                            try {
                                 processor.process(object, resultSet);
+                            } catch (SQLException error) {
+                                throw error;
+                            } catch (Throwable error) {
+                                LOGGER.warn("Set property error", error);
                             }
-                            result.add(object);
-                        } catch (ReflectiveOperationException e) {
-                            throw new IllegalArgumentException();
                         }
+                        visitor.visit(clazz.cast(object));
                     }
                 }
 
             } finally {
-                statement.close();
-                connection.close();
+                try {
+                    if (autoCommit) {
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+                    }
+                } finally {
+                    statement.close();
+                    connection.close();
+                }
             }
         }
-
-        return result;
     }
 
+    /**
+     * Returns generated key if it was requested or number of updated rows otherwise.
+     */
     public long executeUpdate() throws SQLException {
 
         if (query != null) {
@@ -455,6 +655,8 @@ public final class QueryBuilder {
                     if (resultSet.next()) {
                         return resultSet.getLong(1);
                     }
+                } else {
+                    return Math.max(statement.getUpdateCount(), 0);
                 }
             } finally {
                 statement.close();
@@ -464,6 +666,64 @@ public final class QueryBuilder {
         return 0;
     }
 
+    public QueryBuilder addBatch() throws SQLException {
+        if (query != null) {
+            try {
+                statement.addBatch();
+            } catch (SQLException error) {
+                statement.close();
+                connection.close();
+                throw error;
+            }
+        }
+        return this;
+    }
+
+    private int[] executeBatchAtomically() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int[] result = statement.executeBatch();
+            connection.commit();
+            return result;
+        } catch (SQLException error) {
+            connection.rollback();
+            throw error;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    public int[] executeBatch() throws SQLException {
+        if (query != null) {
+            try {
+                return executeBatchAtomically();
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
+        return new int[0];
+    }
+
+    public List<Long> executeBatchGeneratedKeys() throws SQLException {
+        List<Long> result = new LinkedList<>();
+        if (query != null) {
+            try {
+                executeBatchAtomically();
+                try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                    while (resultSet.next()) {
+                        result.add(resultSet.getLong(1));
+                    }
+                }
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
+        return result;
+    }
+
     public Collection<Permission> executePermissionsQuery() throws SQLException, ClassNotFoundException {
         List<Permission> result = new LinkedList<>();
         if (query != null) {
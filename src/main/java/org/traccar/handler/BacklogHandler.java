@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import org.traccar.BaseDataHandler;
+import org.traccar.PositionBatch;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.IdentityManager;
+import org.traccar.model.Position;
+
+/**
+ * Marks positions that are older than the latest device position, and positions that are older than the configured
+ * age, so the rest of the pipeline can handle bursts of buffered records without delaying live traffic. With batched
+ * decoding the newest position of a message is never marked by age, because it is the one that updates the device
+ * state and generates live events, even after a long offline period. Without batching positions of a message arrive
+ * one by one, so each of them is checked by age.
+ */
+@ChannelHandler.Sharable
+public class BacklogHandler extends BaseDataHandler {
+
+    private final IdentityManager identityManager;
+    private final long age;
+    private final boolean batchPositions;
+
+    public BacklogHandler(Config config, IdentityManager identityManager) {
+        this.identityManager = identityManager;
+        age = config.getLong(Keys.PROCESSING_BACKLOG_AGE) * 1000;
+        batchPositions = config.getBoolean(Keys.DECODER_BATCH_POSITIONS);
+    }
+
+    private void mark(Position position, boolean checkAge) {
+        if (!identityManager.isLatestPosition(position)
+                || checkAge && position.getFixTime().getTime() < System.currentTimeMillis() - age) {
+            position.setBacklog(true);
+        }
+    }
+
+    @Override
+    protected PositionBatch handleBatch(PositionBatch batch) {
+        Position newest = batch.getNewest();
+        for (Position position : batch.getPositions()) {
+            mark(position, position != newest);
+        }
+        return batch;
+    }
+
+    @Override
+    protected Position handlePosition(Position position) {
+        mark(position, !batchPositions); // with batching a single position is the whole message
+        return position;
+    }
+
+}
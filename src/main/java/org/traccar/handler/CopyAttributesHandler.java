@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 - 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -39,7 +39,7 @@ public class CopyAttributesHandler extends BaseDataHandler {
         } else {
             attributesString += "," + Position.KEY_DRIVER_UNIQUE_ID;
         }
-        Position last = identityManager.getLastPosition(position.getDeviceId());
+        Position last = getLastPosition(identityManager, position.getDeviceId());
         if (last != null) {
             for (String attribute : attributesString.split("[ ,]")) {
                 if (last.getAttributes().containsKey(attribute) && !position.getAttributes().containsKey(attribute)) {
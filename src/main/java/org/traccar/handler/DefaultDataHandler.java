@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,33 +16,74 @@
 package org.traccar.handler;
 
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
-import org.traccar.database.DataManager;
+import org.traccar.PositionBatch;
+import org.traccar.ProcessingExecutor;
+import org.traccar.database.PositionWriter;
 import org.traccar.model.Position;
 
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores positions. On processing threads positions are queued for the background writer and passed on once they
+ * are committed and have their ids, without blocking the thread. Network threads can't continue asynchronously
+ * without losing positions of closing channels, so they insert positions directly.
+ */
 @ChannelHandler.Sharable
 public class DefaultDataHandler extends BaseDataHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataHandler.class);
 
-    private final DataManager dataManager;
+    private final PositionWriter positionWriter;
 
-    public DefaultDataHandler(DataManager dataManager) {
-        this.dataManager = dataManager;
+    public DefaultDataHandler(PositionWriter positionWriter) {
+        this.positionWriter = positionWriter;
     }
 
     @Override
-    protected Position handlePosition(Position position) {
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (ProcessingExecutor.isProcessing(ctx) && msg instanceof Position) {
+            Runnable resume = ProcessingExecutor.suspend(ctx, (Position) msg);
+            positionWriter.store((Position) msg).whenComplete((result, error) -> complete(error, resume));
+        } else if (ProcessingExecutor.isProcessing(ctx) && msg instanceof PositionBatch) {
+            Runnable resume = ProcessingExecutor.suspend(ctx, (PositionBatch) msg);
+            positionWriter.store(((PositionBatch) msg).getPositions()).whenComplete(
+                    (result, error) -> complete(error, resume));
+        } else {
+            super.channelRead(ctx, msg);
+        }
+    }
 
+    private static void complete(Throwable error, Runnable resume) {
+        if (error != null) {
+            LOGGER.warn("Failed to store position", error);
+        }
+        resume.run();
+    }
+
+    private void storeNow(List<Position> positions) {
         try {
-            dataManager.addObject(position);
-        } catch (Exception error) {
+            positionWriter.storeNow(positions);
+        } catch (SQLException | RuntimeException error) {
             LOGGER.warn("Failed to store position", error);
         }
+    }
 
+    @Override
+    protected Position handlePosition(Position position) {
+        storeNow(Collections.singletonList(position));
         return position;
     }
 
+    @Override
+    protected PositionBatch handleBatch(PositionBatch batch) {
+        storeNow(batch.getPositions());
+        return batch;
+    }
+
 }
@@ -52,7 +52,7 @@ public class DistanceHandler extends BaseDataHandler {
         }
         double totalDistance = 0.0;
 
-        Position last = identityManager != null ? identityManager.getLastPosition(position.getDeviceId()) : null;
+        Position last = getLastPosition(identityManager, position.getDeviceId());
         if (last != null) {
             totalDistance = last.getDouble(Position.KEY_TOTAL_DISTANCE);
             if (!position.getAttributes().containsKey(Position.KEY_DISTANCE)) {
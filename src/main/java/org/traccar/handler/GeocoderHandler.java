@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,8 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.PositionBatch;
+import org.traccar.ProcessingExecutor;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.database.IdentityManager;
@@ -52,7 +54,18 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(final ChannelHandlerContext ctx, Object message) {
-        if (message instanceof Position && !ignorePositions) {
+        if (message instanceof PositionBatch && !ignorePositions && !((PositionBatch) message).isBacklog()) {
+            PositionBatch batch = (PositionBatch) message;
+            PositionBatch backlog = batch.getBacklogBatch();
+            if (backlog != null) {
+                ctx.fireChannelRead(backlog);
+            }
+            for (Position position : batch.getLivePositions()) {
+                channelRead(ctx, position); // live positions are handled asynchronously, so they are split off
+            }
+            return;
+        }
+        if (message instanceof Position && !ignorePositions && !((Position) message).getBacklog()) {
             final Position position = (Position) message;
             if (processInvalidPositions || position.getValid()) {
                 if (geocoderReuseDistance != 0) {
@@ -69,18 +82,19 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
                     statisticsManager.registerGeocoderRequest();
                 }
 
+                Runnable resume = ProcessingExecutor.suspend(ctx, position);
                 geocoder.getAddress(position.getLatitude(), position.getLongitude(),
                         new Geocoder.ReverseGeocoderCallback() {
                     @Override
                     public void onSuccess(String address) {
                         position.setAddress(address);
-                        ctx.fireChannelRead(position);
+                        resume.run();
                     }
 
                     @Override
                     public void onFailure(Throwable e) {
                         LOGGER.warn("Geocoding failed", e);
-                        ctx.fireChannelRead(position);
+                        resume.run();
                     }
                 });
             } else {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.PositionBatch;
+import org.traccar.ProcessingExecutor;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.database.StatisticsManager;
@@ -44,7 +46,18 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(final ChannelHandlerContext ctx, Object message) {
-        if (message instanceof Position) {
+        if (message instanceof PositionBatch && !((PositionBatch) message).isBacklog()) {
+            PositionBatch batch = (PositionBatch) message;
+            PositionBatch backlog = batch.getBacklogBatch();
+            if (backlog != null) {
+                ctx.fireChannelRead(backlog);
+            }
+            for (Position position : batch.getLivePositions()) {
+                channelRead(ctx, position); // live positions are handled asynchronously, so they are split off
+            }
+            return;
+        }
+        if (message instanceof Position && !((Position) message).getBacklog()) {
             final Position position = (Position) message;
             if ((position.getOutdated() || processInvalidPositions && !position.getValid())
                     && position.getNetwork() != null) {
@@ -52,6 +65,7 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
                     statisticsManager.registerGeolocationRequest();
                 }
 
+                Runnable resume = ProcessingExecutor.suspend(ctx, position);
                 geolocationProvider.getLocation(position.getNetwork(),
                         new GeolocationProvider.LocationProviderCallback() {
                     @Override
@@ -65,13 +79,13 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
                         position.setAltitude(0);
                         position.setSpeed(0);
                         position.setCourse(0);
-                        ctx.fireChannelRead(position);
+                        resume.run();
                     }
 
                     @Override
                     public void onFailure(Throwable e) {
                         LOGGER.warn("Geolocation network error", e);
-                        ctx.fireChannelRead(position);
+                        resume.run();
                     }
                 });
             } else {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2019 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,16 +17,82 @@ package org.traccar.handler;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.traccar.NetworkMessage;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+@ChannelHandler.Sharable
 public class NetworkMessageHandler extends ChannelDuplexHandler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetworkMessageHandler.class);
+
+    private static final AttributeKey<AtomicLong> UNWRITABLE = AttributeKey.valueOf("unwritable");
+
+    private static final AtomicInteger UNWRITABLE_CHANNELS = new AtomicInteger();
+    private static final AtomicLong DROPPED_MESSAGES = new AtomicLong();
+
+    private final boolean dropUnwritable;
+
+    /**
+     * @param dropUnwritable drop outgoing messages while the channel outbound buffer is above the high watermark
+     */
+    public NetworkMessageHandler(boolean dropUnwritable) {
+        this.dropUnwritable = dropUnwritable;
+    }
+
+    /**
+     * Returns number of channels with outbound buffer above the high watermark.
+     */
+    public static int getUnwritableChannels() {
+        return UNWRITABLE_CHANNELS.get();
+    }
+
+    /**
+     * Returns total number of outgoing messages dropped because the channel was not writable.
+     */
+    public static long getDroppedMessages() {
+        return DROPPED_MESSAGES.get();
+    }
+
+    private static void setWritable(ChannelHandlerContext ctx) {
+        AtomicLong dropped = ctx.channel().attr(UNWRITABLE).getAndSet(null);
+        if (dropped != null) {
+            UNWRITABLE_CHANNELS.decrementAndGet();
+            if (dropped.get() > 0) {
+                LOGGER.info("{} {} messages dropped while not writable", ctx.channel().id(), dropped.get());
+            }
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            setWritable(ctx);
+        } else if (ctx.channel().attr(UNWRITABLE).setIfAbsent(new AtomicLong()) == null) {
+            LOGGER.info("{} not writable, {} channels not writable",
+                    ctx.channel().id(), UNWRITABLE_CHANNELS.incrementAndGet());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        setWritable(ctx);
+        ctx.fireChannelInactive();
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         if (ctx.channel() instanceof DatagramChannel) {
@@ -42,6 +108,18 @@ public class NetworkMessageHandler extends ChannelDuplexHandler {
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
         if (msg instanceof NetworkMessage) {
             NetworkMessage message = (NetworkMessage) msg;
+            if (dropUnwritable && !ctx.channel().isWritable()) {
+                AtomicLong dropped = ctx.channel().attr(UNWRITABLE).get();
+                if (dropped != null) {
+                    dropped.incrementAndGet();
+                }
+                DROPPED_MESSAGES.incrementAndGet();
+                ReferenceCountUtil.release(message.getMessage());
+                if (!promise.isVoid()) {
+                    promise.tryFailure(new IOException("Channel not writable"));
+                }
+                return;
+            }
             if (ctx.channel() instanceof DatagramChannel) {
                 InetSocketAddress recipient = (InetSocketAddress) message.getRemoteAddress();
                 InetSocketAddress sender = (InetSocketAddress) ctx.channel().localAddress();
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.BaseProtocolDecoder;
+import org.traccar.DeviceSession;
+import org.traccar.PositionBatch;
+import org.traccar.ProcessingExecutor;
+import org.traccar.model.Position;
+
+/**
+ * Passes decoded messages from the network thread to the processing thread of their device. Channel lifecycle events
+ * use the thread assigned to the channel, where Netty also runs channel activation and handler removal, so they can't
+ * overtake each other, and they wait for messages dispatched before them.
+ */
+@ChannelHandler.Sharable
+public class ProcessingDispatchHandler extends ChannelInboundHandlerAdapter {
+
+    private final ProcessingExecutor executor;
+
+    public ProcessingDispatchHandler(ProcessingExecutor executor) {
+        this.executor = executor;
+    }
+
+    private static long channelKey(ChannelHandlerContext ctx) {
+        BaseProtocolDecoder decoder = ctx.pipeline().get(BaseProtocolDecoder.class);
+        if (decoder != null) {
+            DeviceSession deviceSession = decoder.findDeviceSession(ctx.channel(), ctx.channel().remoteAddress());
+            if (deviceSession != null) {
+                return deviceSession.getDeviceId();
+            }
+        }
+        return ctx.channel().hashCode();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        long key;
+        if (msg instanceof Position) {
+            key = ((Position) msg).getDeviceId();
+        } else if (msg instanceof PositionBatch) {
+            key = ((PositionBatch) msg).getDeviceId();
+        } else {
+            key = channelKey(ctx);
+        }
+        executor.execute(ctx.channel(), key, () -> ctx.fireChannelRead(msg));
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        executor.executeChannel(ctx.channel(), ctx::fireChannelInactive);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        executor.executeChannel(ctx.channel(), () -> ctx.fireUserEventTriggered(evt));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        executor.executeChannel(ctx.channel(), () -> ctx.fireExceptionCaught(cause));
+    }
+
+}
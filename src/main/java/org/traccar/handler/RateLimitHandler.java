@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.BaseProtocolDecoder;
+import org.traccar.DeviceSession;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter for incoming messages, applied per remote address and per device before decoding.
+ * Datagrams over the limit are dropped. TCP data can't be dropped without breaking framing, so reading from the
+ * connection is paused until enough tokens are available, or the connection is closed if configured.
+ */
+@ChannelHandler.Sharable
+public class RateLimitHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitHandler.class);
+
+    private static final AttributeKey<Bucket> BUCKET = AttributeKey.valueOf("rateLimitBucket");
+    private static final AttributeKey<BaseProtocolDecoder> DECODER = AttributeKey.valueOf("rateLimitDecoder");
+
+    private static final long CLEANUP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private final double rate;
+    private final int burst;
+    private final boolean close;
+
+    private final Map<SocketAddress, Bucket> addressBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, Bucket> deviceBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastCleanup = new AtomicLong(System.nanoTime());
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final class Bucket {
+
+        private final Object key;
+        private double tokens = burst;
+        private long time = System.nanoTime();
+        private long limited;
+
+        private Bucket(Object key) {
+            this.key = key;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - time) * rate / TimeUnit.SECONDS.toNanos(1));
+            time = now;
+        }
+
+        /**
+         * Takes a token if there is one, or always if forced, in which case the balance can go negative.
+         *
+         * @return zero if the token was available, otherwise nanoseconds until the balance is positive again
+         */
+        private synchronized long acquire(long now, boolean force) {
+            refill(now);
+            long delay = 0;
+            if (tokens < 1) {
+                delay = (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+                if (limited++ == 0) {
+                    LOGGER.warn("Rate limit exceeded for {}", key);
+                }
+            } else if (limited > 0) {
+                LOGGER.info("{} messages from {} exceeded rate limit", limited, key);
+                limited = 0;
+            }
+            if (delay == 0 || force) {
+                tokens -= 1;
+            }
+            return delay;
+        }
+
+        private synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst && limited == 0;
+        }
+
+    }
+
+    public RateLimitHandler(double rate, int burst, boolean close) {
+        this.rate = rate;
+        this.burst = Math.max(burst, 1);
+        this.close = close;
+    }
+
+    /**
+     * Returns number of dropped datagrams and throttled TCP reads.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void cleanup(long now) {
+        long last = lastCleanup.get();
+        if (now - last > CLEANUP_INTERVAL && lastCleanup.compareAndSet(last, now)) {
+            addressBuckets.values().removeIf(bucket -> bucket.isFull(now));
+            deviceBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+    }
+
+    private BaseProtocolDecoder getDecoder(ChannelHandlerContext ctx) {
+        BaseProtocolDecoder decoder = ctx.channel().attr(DECODER).get();
+        if (decoder == null) {
+            decoder = ctx.pipeline().get(BaseProtocolDecoder.class);
+            ctx.channel().attr(DECODER).set(decoder);
+        }
+        return decoder;
+    }
+
+    private long acquire(ChannelHandlerContext ctx, SocketAddress remoteAddress, Bucket addressBucket, boolean force) {
+        long now = System.nanoTime();
+        long delay = addressBucket.acquire(now, force);
+        BaseProtocolDecoder decoder = getDecoder(ctx);
+        DeviceSession deviceSession = decoder != null ? decoder.findDeviceSession(ctx.channel(), remoteAddress) : null;
+        if (deviceSession != null && (delay == 0 || force)) {
+            long deviceId = deviceSession.getDeviceId();
+            delay = Math.max(delay, deviceBuckets.computeIfAbsent(
+                    deviceId, key -> new Bucket("device " + key)).acquire(now, force));
+        }
+        cleanup(now);
+        return delay;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof DatagramPacket) {
+            SocketAddress remoteAddress = ((DatagramPacket) msg).sender();
+            Bucket bucket = addressBuckets.computeIfAbsent(remoteAddress, Bucket::new);
+            if (acquire(ctx, remoteAddress, bucket, false) > 0) {
+                dropped.incrementAndGet();
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+        } else {
+            Bucket bucket = ctx.channel().attr(BUCKET).get();
+            if (bucket == null) {
+                bucket = new Bucket(ctx.channel().remoteAddress());
+                ctx.channel().attr(BUCKET).set(bucket);
+            }
+            long delay = acquire(ctx, ctx.channel().remoteAddress(), bucket, true);
+            if (delay > 0) {
+                dropped.incrementAndGet();
+                if (close) {
+                    ReferenceCountUtil.release(msg);
+                    ctx.close();
+                    return;
+                }
+                ctx.channel().config().setAutoRead(false);
+                ctx.executor().schedule(() -> ctx.channel().config().setAutoRead(true), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.traccar.handler;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.PositionBatch;
 import org.traccar.model.Position;
 
 import java.net.InetSocketAddress;
@@ -34,6 +35,10 @@ public class RemoteAddressHandler extends ChannelInboundHandlerAdapter {
         if (msg instanceof Position) {
             Position position = (Position) msg;
             position.set(Position.KEY_IP, hostAddress);
+        } else if (msg instanceof PositionBatch) {
+            for (Position position : ((PositionBatch) msg).getPositions()) {
+                position.set(Position.KEY_IP, hostAddress);
+            }
         }
 
         ctx.fireChannelRead(msg);
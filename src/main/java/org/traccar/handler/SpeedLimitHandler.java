@@ -20,6 +20,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.PositionBatch;
+import org.traccar.ProcessingExecutor;
 import org.traccar.model.Position;
 import org.traccar.speedlimit.SpeedLimitProvider;
 
@@ -36,20 +38,32 @@ public class SpeedLimitHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(final ChannelHandlerContext ctx, Object message) {
-        if (message instanceof Position) {
+        if (message instanceof PositionBatch && !((PositionBatch) message).isBacklog()) {
+            PositionBatch batch = (PositionBatch) message;
+            PositionBatch backlog = batch.getBacklogBatch();
+            if (backlog != null) {
+                ctx.fireChannelRead(backlog);
+            }
+            for (Position position : batch.getLivePositions()) {
+                channelRead(ctx, position); // live positions are handled asynchronously, so they are split off
+            }
+            return;
+        }
+        if (message instanceof Position && !((Position) message).getBacklog()) {
             final Position position = (Position) message;
+            Runnable resume = ProcessingExecutor.suspend(ctx, position);
             speedLimitProvider.getSpeedLimit(position.getLatitude(), position.getLongitude(),
                     new SpeedLimitProvider.SpeedLimitProviderCallback() {
                 @Override
                 public void onSuccess(double speedLimit) {
                     position.set(Position.KEY_SPEED_LIMIT, speedLimit);
-                    ctx.fireChannelRead(position);
+                    resume.run();
                 }
 
                 @Override
                 public void onFailure(Throwable e) {
                     LOGGER.warn("Speed limit provider failed", e);
-                    ctx.fireChannelRead(position);
+                    resume.run();
                 }
             });
         } else {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2019 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,41 +22,88 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.BasePipelineFactory;
+import org.traccar.BaseProtocolDecoder;
+import org.traccar.Context;
+import org.traccar.DeviceSession;
 import org.traccar.NetworkMessage;
+import org.traccar.model.Device;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.Set;
 
 public class StandardLoggingHandler extends ChannelDuplexHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StandardLoggingHandler.class);
 
     private final String protocol;
+    private final Set<String> devices;
+    private final int sample;
+
+    private int count;
+    private BaseProtocolDecoder decoder;
 
     public StandardLoggingHandler(String protocol) {
+        this(protocol, null, 1);
+    }
+
+    /**
+     * @param devices unique identifiers of devices to log or null to log all traffic
+     * @param sample log only every n-th frame
+     */
+    public StandardLoggingHandler(String protocol, Set<String> devices, int sample) {
         this.protocol = protocol;
+        this.devices = devices;
+        this.sample = sample;
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        log(ctx, false, msg);
+        if (LOGGER.isInfoEnabled()) {
+            log(ctx, false, msg);
+        }
         super.channelRead(ctx, msg);
     }
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        log(ctx, true, msg);
+        if (LOGGER.isInfoEnabled()) {
+            log(ctx, true, msg);
+        }
         super.write(ctx, msg, promise);
     }
 
+    private boolean isDeviceLogged(ChannelHandlerContext ctx, SocketAddress remoteAddress) {
+        if (decoder == null) {
+            decoder = BasePipelineFactory.getHandler(ctx.pipeline(), BaseProtocolDecoder.class);
+        }
+        DeviceSession deviceSession = decoder != null ? decoder.findDeviceSession(ctx.channel(), remoteAddress) : null;
+        if (deviceSession != null && Context.getIdentityManager() != null) {
+            Device device = Context.getIdentityManager().getById(deviceSession.getDeviceId());
+            return device != null && devices.contains(device.getUniqueId());
+        }
+        return false;
+    }
+
     public void log(ChannelHandlerContext ctx, boolean downstream, Object o) {
-        if (o instanceof NetworkMessage) {
+        ByteBuf buf;
+        SocketAddress remoteAddress;
+        if (o instanceof NetworkMessage && ((NetworkMessage) o).getMessage() instanceof ByteBuf) {
             NetworkMessage networkMessage = (NetworkMessage) o;
-            if (networkMessage.getMessage() instanceof ByteBuf) {
-                log(ctx, downstream, networkMessage.getRemoteAddress(), (ByteBuf) networkMessage.getMessage());
-            }
+            buf = (ByteBuf) networkMessage.getMessage();
+            remoteAddress = networkMessage.getRemoteAddress();
         } else if (o instanceof ByteBuf) {
-            log(ctx, downstream, ctx.channel().remoteAddress(), (ByteBuf) o);
+            buf = (ByteBuf) o;
+            remoteAddress = ctx.channel().remoteAddress();
+        } else {
+            return;
+        }
+        if (sample > 1 && count++ % sample != 0) {
+            return;
+        }
+        if (devices == null || isDeviceLogged(ctx, remoteAddress)) {
+            log(ctx, downstream, remoteAddress, buf);
         }
     }
 
@@ -20,6 +20,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.Context;
+import org.traccar.PositionBatch;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.model.Position;
@@ -47,19 +48,28 @@ public class TimeHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
 
-        if (msg instanceof Position && (protocols == null
+        if ((msg instanceof Position || msg instanceof PositionBatch) && (protocols == null
                 || protocols.contains(ctx.pipeline().get(BaseProtocolDecoder.class).getProtocolName()))) {
 
-            Position position = (Position) msg;
-            if (useServerTime) {
-                position.setDeviceTime(position.getServerTime());
-                position.setFixTime(position.getServerTime());
+            if (msg instanceof PositionBatch) {
+                for (Position position : ((PositionBatch) msg).getPositions()) {
+                    updateTime(position);
+                }
             } else {
-                position.setFixTime(position.getDeviceTime());
+                updateTime((Position) msg);
             }
 
         }
         ctx.fireChannelRead(msg);
     }
 
+    private void updateTime(Position position) {
+        if (useServerTime) {
+            position.setDeviceTime(position.getServerTime());
+            position.setFixTime(position.getServerTime());
+        } else {
+            position.setFixTime(position.getDeviceTime());
+        }
+    }
+
 }
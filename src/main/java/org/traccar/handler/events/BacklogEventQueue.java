@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs event analysis for backlog positions on a single background thread, so large uploads of buffered records
+ * don't compete with live positions. Tasks are dropped when the queue is full.
+ */
+public class BacklogEventQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BacklogEventQueue.class);
+
+    private final BlockingQueue<Runnable> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public BacklogEventQueue(int queueSize) {
+        queue = new ArrayBlockingQueue<>(queueSize);
+        Thread thread = new Thread(this::process);
+        thread.setName("Backlog events");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void process() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                queue.take().run();
+                long count = dropped.getAndSet(0);
+                if (count > 0) {
+                    LOGGER.warn("{} backlog positions skipped by event handlers", count);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Backlog event error", e);
+            }
+        }
+    }
+
+    public void execute(Runnable task) {
+        if (!queue.offer(task)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+}
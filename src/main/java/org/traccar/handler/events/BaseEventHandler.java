@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,20 +19,53 @@ import java.util.Map;
 
 import org.traccar.BaseDataHandler;
 import org.traccar.Context;
+import org.traccar.Main;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
 public abstract class BaseEventHandler extends BaseDataHandler {
 
-    @Override
-    protected Position handlePosition(Position position) {
+    private BacklogEventQueue backlogQueue;
+    private volatile boolean backlogQueueResolved;
+
+    private BacklogEventQueue getBacklogQueue() {
+        if (!backlogQueueResolved) {
+            backlogQueue = Main.getInjector() != null ? Main.getInjector().getInstance(BacklogEventQueue.class) : null;
+            backlogQueueResolved = true;
+        }
+        return backlogQueue;
+    }
+
+    private void updateEvents(Position position) {
         Map<Event, Position> events = analyzePosition(position);
         if (events != null && Context.getNotificationManager() != null) {
             Context.getNotificationManager().updateEvents(events);
         }
+    }
+
+    @Override
+    protected Position handlePosition(Position position) {
+        if (position.getBacklog()) {
+            if (handleBacklog()) {
+                BacklogEventQueue queue = getBacklogQueue();
+                if (queue != null) {
+                    queue.execute(() -> updateEvents(position));
+                }
+            }
+        } else {
+            updateEvents(position);
+        }
         return position;
     }
 
+    /**
+     * Whether events can be generated for backlog positions later and on another thread. Handlers that keep device
+     * state or only analyze the latest position must not enable it.
+     */
+    protected boolean handleBacklog() {
+        return false;
+    }
+
     protected abstract Map<Event, Position> analyzePosition(Position position);
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,11 @@ import org.traccar.model.Position;
 @ChannelHandler.Sharable
 public class CommandResultEventHandler extends BaseEventHandler {
 
+    @Override
+    protected boolean handleBacklog() {
+        return true;
+    }
+
     @Override
     protected Map<Event, Position> analyzePosition(Position position) {
         Object commandResult = position.getAttributes().get(Position.KEY_RESULT);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,7 +50,7 @@ public class FuelDropEventHandler extends BaseEventHandler {
                 .lookupAttributeDouble(device.getId(), ATTRIBUTE_FUEL_DROP_THRESHOLD, 0, true, false);
 
         if (fuelDropThreshold > 0) {
-            Position lastPosition = identityManager.getLastPosition(position.getDeviceId());
+            Position lastPosition = getLastPosition(identityManager, position.getDeviceId());
             if (position.getAttributes().containsKey(Position.KEY_FUEL_LEVEL)
                     && lastPosition != null && lastPosition.getAttributes().containsKey(Position.KEY_FUEL_LEVEL)) {
 
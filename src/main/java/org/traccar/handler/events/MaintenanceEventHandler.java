@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 - 2018 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -44,7 +44,7 @@ public class MaintenanceEventHandler extends BaseEventHandler {
             return null;
         }
 
-        Position lastPosition = identityManager.getLastPosition(position.getDeviceId());
+        Position lastPosition = getLastPosition(identityManager, position.getDeviceId());
         if (lastPosition == null) {
             return null;
         }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 package org.traccar.helper;
 
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -29,7 +30,11 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.ConsoleHandler;
+import java.util.logging.ErrorManager;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -50,10 +55,12 @@ public final class Log {
         private String suffix;
         private Writer writer;
         private boolean rotate;
+        private boolean autoFlush;
 
-        RollingFileHandler(String name, boolean rotate) {
+        RollingFileHandler(String name, boolean rotate, boolean autoFlush) {
             this.name = name;
             this.rotate = rotate;
+            this.autoFlush = autoFlush;
         }
 
         @Override
@@ -77,7 +84,9 @@ public final class Log {
                                 new OutputStreamWriter(new FileOutputStream(name, true), StandardCharsets.UTF_8));
                     }
                     writer.write(getFormatter().format(record));
-                    writer.flush();
+                    if (autoFlush) {
+                        writer.flush();
+                    }
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -108,6 +117,67 @@ public final class Log {
 
     }
 
+    /**
+     * Queues records and publishes them to the wrapped handler from a background thread. Records are formatted and
+     * written there as well, so logging threads never block on disk. If the queue is full, records are dropped and
+     * the number of dropped records is logged later.
+     */
+    private static class AsyncHandler extends Handler {
+
+        private final Handler handler;
+        private final BlockingQueue<LogRecord> queue;
+        private final AtomicLong dropped = new AtomicLong();
+
+        AsyncHandler(Handler handler, int queueSize) {
+            this.handler = handler;
+            queue = new ArrayBlockingQueue<>(queueSize);
+            Thread thread = new Thread(this::process);
+            thread.setName("Logger");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void process() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    handler.publish(queue.take());
+                    long count = dropped.getAndSet(0);
+                    if (count > 0) {
+                        handler.publish(new LogRecord(Level.WARNING, count + " log records dropped"));
+                    }
+                    if (queue.isEmpty()) {
+                        handler.flush();
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    reportError(null, e, ErrorManager.WRITE_FAILURE);
+                }
+            }
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            if (isLoggable(record) && !queue.offer(record)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws SecurityException {
+            LogRecord record;
+            while ((record = queue.poll()) != null) {
+                handler.publish(record);
+            }
+            handler.close();
+        }
+
+    }
+
     public static class LogFormatter extends Formatter {
 
         private boolean fullStackTraces;
@@ -173,7 +243,7 @@ public final class Log {
             }
             path = new File(logsPath, "tracker-server.log").getPath();
         }
-        setupLogger(path == null, path, Level.WARNING.getName(), false, true);
+        setupLogger(path == null, path, Level.WARNING.getName(), false, true, 0);
     }
 
     public static void setupLogger(Config config) {
@@ -182,11 +252,13 @@ public final class Log {
                 config.getString("logger.file"),
                 config.getString("logger.level"),
                 config.getBoolean("logger.fullStackTraces"),
-                config.getBoolean("logger.rotate"));
+                config.getBoolean("logger.rotate"),
+                config.getBoolean(Keys.LOGGER_ASYNC) ? config.getInteger(Keys.LOGGER_ASYNC_QUEUE_SIZE, 10000) : 0);
     }
 
     private static void setupLogger(
-            boolean console, String file, String levelString, boolean fullStackTraces, boolean rotate) {
+            boolean console, String file, String levelString, boolean fullStackTraces, boolean rotate,
+            int asyncQueueSize) {
 
         Logger rootLogger = Logger.getLogger("");
         for (Handler handler : rootLogger.getHandlers()) {
@@ -197,12 +269,17 @@ public final class Log {
         if (console) {
             handler = new ConsoleHandler();
         } else {
-            handler = new RollingFileHandler(file, rotate);
+            handler = new RollingFileHandler(file, rotate, asyncQueueSize == 0);
         }
 
+        Level level = Level.parse(levelString.toUpperCase());
+
         handler.setFormatter(new LogFormatter(fullStackTraces));
+        if (asyncQueueSize > 0) {
+            handler.setLevel(level);
+            handler = new AsyncHandler(handler, asyncQueueSize);
+        }
 
-        Level level = Level.parse(levelString.toUpperCase());
         rootLogger.setLevel(level);
         handler.setLevel(level);
         handler.setFilter(record -> record != null && !record.getLoggerName().startsWith("sun"));
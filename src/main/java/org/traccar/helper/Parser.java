@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,10 +22,16 @@ import java.util.regex.Pattern;
 
 public class Parser {
 
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
     private int position;
+    private final CharSequence input;
     private final Matcher matcher;
 
     public Parser(Pattern pattern, String input) {
+        this.input = input;
         matcher = pattern.matcher(input);
     }
 
@@ -48,8 +54,8 @@ public class Parser {
     }
 
     public boolean hasNext(int number) {
-        String value = matcher.group(position);
-        if (value != null && !value.isEmpty()) {
+        int start = matcher.start(position);
+        if (start >= 0 && matcher.end(position) > start) {
             return true;
         } else {
             position += number;
@@ -61,9 +67,131 @@ public class Parser {
         return matcher.group(position++);
     }
 
+    /**
+     * Parse group value without creating a string. Falls back to {@link Long#parseLong(String, int)} for anything
+     * that is not a plain sequence of digits with optional sign or doesn't fit, so results and errors are the same.
+     */
+    private long parseLong(int group, int radix, long min, long max) {
+        int start = matcher.start(group);
+        int end = matcher.end(group);
+        int index = start;
+        boolean negative = false;
+        if (index < end) {
+            char first = input.charAt(index);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                index += 1;
+            }
+        }
+        if (index < end) {
+            long limit = (Long.MAX_VALUE - radix) / radix;
+            long value = 0;
+            while (index < end && value <= limit) {
+                int digit = Character.digit(input.charAt(index), radix);
+                if (digit < 0) {
+                    break;
+                }
+                value = value * radix + digit;
+                index += 1;
+            }
+            if (index == end) {
+                value = negative ? -value : value;
+                if (value >= min && value <= max) {
+                    return value;
+                }
+            }
+        }
+        String value = input.subSequence(start, end).toString();
+        return max == Integer.MAX_VALUE ? Integer.parseInt(value, radix) : Long.parseLong(value, radix);
+    }
+
+    private int nextIntValue(int radix) {
+        return (int) parseLong(position++, radix, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    private long nextLongValue(int radix) {
+        return parseLong(position++, radix, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parse decimal number from the integer group and optional fraction group (-1 if absent) without creating a
+     * string. Values with up to 15 digits are converted exactly like {@link Double#parseDouble(String)} does, because
+     * both the mantissa and the power of ten are exactly representable. Other values fall back to the standard method.
+     */
+    private double parseDouble(int group, int fractionGroup) {
+        int start = matcher.start(group);
+        int end = matcher.end(group);
+        int index = start;
+        boolean negative = false;
+        boolean valid = start >= 0 && (fractionGroup < 0 || matcher.start(fractionGroup) >= 0);
+        if (valid && index < end) {
+            char first = input.charAt(index);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                index += 1;
+            }
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; valid && index < end; index++) {
+            char c = input.charAt(index);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits += 1;
+                if (point) {
+                    scale += 1;
+                }
+            } else if (c == '.' && !point && fractionGroup < 0) {
+                point = true;
+            } else {
+                valid = false;
+            }
+            if (digits > 15) {
+                valid = false;
+            }
+        }
+        if (valid && fractionGroup >= 0) {
+            for (index = matcher.start(fractionGroup); index < matcher.end(fractionGroup); index++) {
+                char c = input.charAt(index);
+                if (c >= '0' && c <= '9' && digits < 15) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits += 1;
+                    scale += 1;
+                } else {
+                    valid = false;
+                    break;
+                }
+            }
+        }
+
+        if (valid && digits > 0) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+
+        if (fractionGroup >= 0) {
+            return Double.parseDouble(matcher.group(group) + '.' + matcher.group(fractionGroup));
+        } else {
+            return Double.parseDouble(matcher.group(group));
+        }
+    }
+
+    private double nextDoubleValue() {
+        return parseDouble(position++, -1);
+    }
+
+    private double nextDecimalValue() {
+        double value = parseDouble(position, position + 1);
+        position += 2;
+        return value;
+    }
+
     public Integer nextInt() {
         if (hasNext()) {
-            return Integer.parseInt(next());
+            return nextIntValue(10);
         } else {
             return null;
         }
@@ -71,7 +199,7 @@ public class Parser {
 
     public int nextInt(int defaultValue) {
         if (hasNext()) {
-            return Integer.parseInt(next());
+            return nextIntValue(10);
         } else {
             return defaultValue;
         }
@@ -79,7 +207,7 @@ public class Parser {
 
     public Integer nextHexInt() {
         if (hasNext()) {
-            return Integer.parseInt(next(), 16);
+            return nextIntValue(16);
         } else {
             return null;
         }
@@ -87,7 +215,7 @@ public class Parser {
 
     public int nextHexInt(int defaultValue) {
         if (hasNext()) {
-            return Integer.parseInt(next(), 16);
+            return nextIntValue(16);
         } else {
             return defaultValue;
         }
@@ -95,7 +223,7 @@ public class Parser {
 
     public Integer nextBinInt() {
         if (hasNext()) {
-            return Integer.parseInt(next(), 2);
+            return nextIntValue(2);
         } else {
             return null;
         }
@@ -103,7 +231,7 @@ public class Parser {
 
     public int nextBinInt(int defaultValue) {
         if (hasNext()) {
-            return Integer.parseInt(next(), 2);
+            return nextIntValue(2);
         } else {
             return defaultValue;
         }
@@ -111,7 +239,7 @@ public class Parser {
 
     public Long nextLong() {
         if (hasNext()) {
-            return Long.parseLong(next());
+            return nextLongValue(10);
         } else {
             return null;
         }
@@ -119,7 +247,7 @@ public class Parser {
 
     public Long nextHexLong() {
         if (hasNext()) {
-            return Long.parseLong(next(), 16);
+            return nextLongValue(16);
         } else {
             return null;
         }
@@ -131,7 +259,7 @@ public class Parser {
 
     public long nextLong(int radix, long defaultValue) {
         if (hasNext()) {
-            return Long.parseLong(next(), radix);
+            return nextLongValue(radix);
         } else {
             return defaultValue;
         }
@@ -139,7 +267,7 @@ public class Parser {
 
     public Double nextDouble() {
         if (hasNext()) {
-            return Double.parseDouble(next());
+            return nextDoubleValue();
         } else {
             return null;
         }
@@ -147,7 +275,7 @@ public class Parser {
 
     public double nextDouble(double defaultValue) {
         if (hasNext()) {
-            return Double.parseDouble(next());
+            return nextDoubleValue();
         } else {
             return defaultValue;
         }
@@ -171,7 +299,7 @@ public class Parser {
 
         switch (format) {
             case DEG_DEG:
-                coordinate = Double.parseDouble(next() + '.' + next());
+                coordinate = nextDecimalValue();
                 break;
             case DEG_HEM:
                 coordinate = nextDouble(0);
@@ -179,11 +307,11 @@ public class Parser {
                 break;
             case DEG_MIN_MIN:
                 coordinate = nextInt(0);
-                coordinate += Double.parseDouble(next() + '.' + next()) / 60;
+                coordinate += nextDecimalValue() / 60;
                 break;
             case DEG_MIN_MIN_HEM:
                 coordinate = nextInt(0);
-                coordinate += Double.parseDouble(next() + '.' + next()) / 60;
+                coordinate += nextDecimalValue() / 60;
                 hemisphere = next();
                 break;
             case HEM_DEG:
@@ -206,7 +334,7 @@ public class Parser {
             case HEM_DEG_MIN_MIN:
                 hemisphere = next();
                 coordinate = nextInt(0);
-                coordinate += Double.parseDouble(next() + '.' + next()) / 60;
+                coordinate += nextDecimalValue() / 60;
                 break;
             case DEG_MIN_HEM:
             default:
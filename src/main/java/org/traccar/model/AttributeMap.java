@@ -0,0 +1,331 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Insertion ordered map of model attributes. Integer, long, double and boolean values are kept in a primitive array
+ * and only boxed when read through the map interface, so decoders can set numeric attributes without allocating an
+ * object and a map entry for each of them. Keys are compared by reference first, which is enough for constant keys
+ * like {@link Position#KEY_BATTERY}, and by value otherwise. Small maps are scanned linearly; once a map grows past
+ * {@link #LOOKUP_THRESHOLD} entries a hashed lookup of key positions is maintained, so lookups stay constant time for
+ * decoders that report many dynamic attributes.
+ */
+public class AttributeMap extends AbstractMap<String, Object> {
+
+    private static final byte TYPE_OBJECT = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    private static final int LOOKUP_THRESHOLD = 8;
+
+    private String[] keys;
+    private byte[] types;
+    private long[] values;
+    private Object[] objects;
+    private int size;
+    private Map<String, Integer> lookup;
+
+    public AttributeMap() {
+        this(8);
+    }
+
+    public AttributeMap(Map<String, Object> map) {
+        this(Math.max(map.size(), 8));
+        putAll(map);
+    }
+
+    private AttributeMap(int capacity) {
+        keys = new String[capacity];
+        types = new byte[capacity];
+        values = new long[capacity];
+        objects = new Object[capacity];
+    }
+
+    private int indexOf(Object key) {
+        if (lookup != null) {
+            Integer position = lookup.get(key);
+            return position != null ? position : -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key || key != null && key.equals(keys[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void updateLookup(int from) {
+        if (size > LOOKUP_THRESHOLD) {
+            int start = from;
+            if (lookup == null) {
+                lookup = new HashMap<>(size * 2);
+                start = 0;
+            }
+            for (int i = start; i < size; i++) {
+                lookup.put(keys[i], i);
+            }
+        } else {
+            lookup = null;
+        }
+    }
+
+    private int slot(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                types = Arrays.copyOf(types, capacity);
+                values = Arrays.copyOf(values, capacity);
+                objects = Arrays.copyOf(objects, capacity);
+            }
+            index = size++;
+            keys[index] = key;
+            updateLookup(index);
+        }
+        return index;
+    }
+
+    private void set(int index, byte type, long value) {
+        types[index] = type;
+        values[index] = value;
+        objects[index] = null;
+    }
+
+    private Object valueAt(int index) {
+        switch (types[index]) {
+            case TYPE_INTEGER:
+                return (int) values[index];
+            case TYPE_LONG:
+                return values[index];
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(values[index]);
+            case TYPE_BOOLEAN:
+                return values[index] != 0;
+            default:
+                return objects[index];
+        }
+    }
+
+    private void removeAt(int index) {
+        if (lookup != null) {
+            lookup.remove(keys[index]);
+        }
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(types, index + 1, types, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+            System.arraycopy(objects, index + 1, objects, index, moved);
+        }
+        size -= 1;
+        keys[size] = null;
+        objects[size] = null;
+        updateLookup(index);
+    }
+
+    public void putInteger(String key, int value) {
+        set(slot(key), TYPE_INTEGER, value);
+    }
+
+    public void putLong(String key, long value) {
+        set(slot(key), TYPE_LONG, value);
+    }
+
+    public void putDouble(String key, double value) {
+        set(slot(key), TYPE_DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public void putBoolean(String key, boolean value) {
+        set(slot(key), TYPE_BOOLEAN, value ? 1 : 0);
+    }
+
+    /**
+     * Same conversion as {@link Number#doubleValue()} on the boxed value, but without boxing primitive values.
+     * Returns zero if there is no such attribute.
+     */
+    public double getDouble(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return 0.0;
+        }
+        switch (types[index]) {
+            case TYPE_INTEGER:
+            case TYPE_LONG:
+                return values[index];
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(values[index]);
+            default:
+                return ((Number) valueAt(index)).doubleValue();
+        }
+    }
+
+    public long getLong(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return 0;
+        }
+        switch (types[index]) {
+            case TYPE_INTEGER:
+            case TYPE_LONG:
+                return values[index];
+            case TYPE_DOUBLE:
+                return (long) Double.longBitsToDouble(values[index]);
+            default:
+                return ((Number) valueAt(index)).longValue();
+        }
+    }
+
+    public int getInteger(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return 0;
+        }
+        switch (types[index]) {
+            case TYPE_INTEGER:
+            case TYPE_LONG:
+                return (int) values[index];
+            case TYPE_DOUBLE:
+                return (int) Double.longBitsToDouble(values[index]);
+            default:
+                return ((Number) valueAt(index)).intValue();
+        }
+    }
+
+    public boolean getBoolean(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        } else if (types[index] == TYPE_BOOLEAN) {
+            return values[index] != 0;
+        } else {
+            return (Boolean) valueAt(index);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? valueAt(index) : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = indexOf(key);
+        Object previous = null;
+        if (index >= 0) {
+            previous = valueAt(index);
+        } else {
+            index = slot(key);
+        }
+        types[index] = TYPE_OBJECT;
+        objects[index] = value;
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previous = valueAt(index);
+            removeAt(index);
+            return previous;
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        lookup = null;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next;
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new SimpleEntry<String, Object>(keys[last], valueAt(last)) {
+                @Override
+                public Object setValue(Object value) {
+                    put(getKey(), value);
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+
+    }
+
+}
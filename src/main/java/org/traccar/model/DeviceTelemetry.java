@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.util.Date;
+
+public class DeviceTelemetry {
+
+    private long deviceId;
+
+    public long getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(long deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    private Date fixTime;
+
+    public Date getFixTime() {
+        return fixTime;
+    }
+
+    public void setFixTime(Date fixTime) {
+        this.fixTime = fixTime;
+    }
+
+    private double latitude;
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    private double longitude;
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    private double standardLat;
+
+    public double getStandardLat() {
+        return standardLat;
+    }
+
+    public void setStandardLat(double standardLat) {
+        this.standardLat = standardLat;
+    }
+
+    private double standardLon;
+
+    public double getStandardLon() {
+        return standardLon;
+    }
+
+    public void setStandardLon(double standardLon) {
+        this.standardLon = standardLon;
+    }
+
+    private Integer battery;
+
+    public Integer getBattery() {
+        return battery;
+    }
+
+    public void setBattery(Integer battery) {
+        this.battery = battery;
+    }
+
+    private int apiResult;
+
+    public int getApiResult() {
+        return apiResult;
+    }
+
+    public void setApiResult(int apiResult) {
+        this.apiResult = apiResult;
+    }
+
+    private Date apiTime;
+
+    public Date getApiTime() {
+        return apiTime;
+    }
+
+    public void setApiTime(Date apiTime) {
+        this.apiTime = apiTime;
+    }
+
+}
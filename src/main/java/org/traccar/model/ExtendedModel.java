@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,60 +15,81 @@
  */
 package org.traccar.model;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ExtendedModel extends BaseModel {
 
-    private Map<String, Object> attributes = new LinkedHashMap<>();
+    private AttributeMap attributes = new AttributeMap();
 
     public Map<String, Object> getAttributes() {
         return attributes;
     }
 
     public void setAttributes(Map<String, Object> attributes) {
-        this.attributes = attributes;
+        if (attributes instanceof AttributeMap) {
+            this.attributes = (AttributeMap) attributes;
+        } else if (attributes != null) {
+            this.attributes = new AttributeMap(attributes);
+        } else {
+            this.attributes = new AttributeMap();
+        }
+    }
+
+    public void set(String key, boolean value) {
+        attributes.putBoolean(key, value);
+    }
+
+    public void set(String key, int value) {
+        attributes.putInteger(key, value);
+    }
+
+    public void set(String key, long value) {
+        attributes.putLong(key, value);
+    }
+
+    public void set(String key, double value) {
+        attributes.putDouble(key, value);
     }
 
     public void set(String key, Boolean value) {
         if (value != null) {
-            attributes.put(key, value);
+            attributes.putBoolean(key, value);
         }
     }
 
     public void set(String key, Byte value) {
         if (value != null) {
-            attributes.put(key, value.intValue());
+            attributes.putInteger(key, value);
         }
     }
 
     public void set(String key, Short value) {
         if (value != null) {
-            attributes.put(key, value.intValue());
+            attributes.putInteger(key, value);
         }
     }
 
     public void set(String key, Integer value) {
         if (value != null) {
-            attributes.put(key, value);
+            attributes.putInteger(key, value);
         }
     }
 
     public void set(String key, Long value) {
         if (value != null) {
-            attributes.put(key, value);
+            attributes.putLong(key, value);
         }
     }
 
     public void set(String key, Float value) {
         if (value != null) {
-            attributes.put(key, value.doubleValue());
+            attributes.putDouble(key, value);
         }
     }
 
     public void set(String key, Double value) {
         if (value != null) {
-            attributes.put(key, value);
+            attributes.putDouble(key, value);
         }
     }
 
@@ -93,35 +114,19 @@ public class ExtendedModel extends BaseModel {
     }
 
     public double getDouble(String key) {
-        if (attributes.containsKey(key)) {
-            return ((Number) attributes.get(key)).doubleValue();
-        } else {
-            return 0.0;
-        }
+        return attributes.getDouble(key);
     }
 
     public boolean getBoolean(String key) {
-        if (attributes.containsKey(key)) {
-            return (Boolean) attributes.get(key);
-        } else {
-            return false;
-        }
+        return attributes.getBoolean(key);
     }
 
     public int getInteger(String key) {
-        if (attributes.containsKey(key)) {
-            return ((Number) attributes.get(key)).intValue();
-        } else {
-            return 0;
-        }
+        return attributes.getInteger(key);
     }
 
     public long getLong(String key) {
-        if (attributes.containsKey(key)) {
-            return ((Number) attributes.get(key)).longValue();
-        } else {
-            return 0;
-        }
+        return attributes.getLong(key);
     }
 
 }
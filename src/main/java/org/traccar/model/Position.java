@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,11 +17,13 @@ package org.traccar.model;
 
 import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.traccar.database.QueryIgnore;
 
 public class Position extends Message {
 
     public static final String KEY_ORIGINAL = "raw";
+    public static final String KEY_CAPTURE = "capture";
     public static final String KEY_INDEX = "index";
     public static final String KEY_HDOP = "hdop";
     public static final String KEY_VDOP = "vdop";
@@ -207,6 +209,22 @@ public class Position extends Message {
         this.outdated = outdated;
     }
 
+    private boolean backlog;
+
+    /**
+     * Set for buffered positions uploaded late or out of order, which are processed without external enrichment,
+     * live forwarding and inline events. Not stored.
+     */
+    @QueryIgnore
+    @JsonIgnore
+    public boolean getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(boolean backlog) {
+        this.backlog = backlog;
+    }
+
     private boolean valid;
 
     public boolean getValid() {
@@ -31,8 +31,10 @@ public class Gt06Protocol extends BaseProtocol {
             @Override
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
                 pipeline.addLast(new Gt06FrameDecoder());
-                pipeline.addLast(new Gt06ProtocolEncoder(Gt06Protocol.this));
-                pipeline.addLast(new Gt06ProtocolDecoder(Gt06Protocol.this));
+                pipeline.addLast(getSharedHandler(
+                        Gt06ProtocolEncoder.class, () -> new Gt06ProtocolEncoder(Gt06Protocol.this)));
+                pipeline.addLast(getSharedHandler(
+                        Gt06ProtocolDecoder.class, () -> new Gt06ProtocolDecoder(Gt06Protocol.this)));
             }
         });
     }
@@ -19,6 +19,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.util.AttributeKey;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.Context;
 import org.traccar.DeviceSession;
@@ -46,14 +48,24 @@ import java.util.Map;
 import java.util.TimeZone;
 import java.util.regex.Pattern;
 
+@ChannelHandler.Sharable
 public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
 
-    private final Map<Integer, ByteBuf> photos = new HashMap<>();
+    private static final AttributeKey<Map<Integer, ByteBuf>> PHOTOS = AttributeKey.valueOf("gt06Photos");
 
     public Gt06ProtocolDecoder(Protocol protocol) {
         super(protocol);
     }
 
+    private Map<Integer, ByteBuf> getPhotos(Channel channel) {
+        Map<Integer, ByteBuf> photos = getChannelState(channel, PHOTOS);
+        if (photos == null) {
+            photos = new HashMap<>();
+            setChannelState(channel, PHOTOS, photos);
+        }
+        return photos;
+    }
+
     public static final int MSG_LOGIN = 0x01;
     public static final int MSG_GPS = 0x10;
     public static final int MSG_LBS = 0x11;
@@ -204,7 +216,7 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
     }
 
     private void sendPhotoRequest(Channel channel, int pictureId) {
-        ByteBuf photo = photos.get(pictureId);
+        ByteBuf photo = getPhotos(channel).get(pictureId);
         ByteBuf content = Unpooled.buffer();
         content.writeInt(pictureId);
         content.writeInt(photo.writerIndex());
@@ -595,7 +607,7 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
 
             ByteBuf photo = Unpooled.buffer(buf.readInt());
             int pictureId = buf.readInt();
-            photos.put(pictureId, photo);
+            getPhotos(channel).put(pictureId, photo);
             sendPhotoRequest(channel, pictureId);
 
         }
@@ -950,6 +962,7 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
 
             int pictureId = buf.readInt();
 
+            Map<Integer, ByteBuf> photos = getPhotos(channel);
             ByteBuf photo = photos.get(pictureId);
 
             buf.readUnsignedInt(); // offset
@@ -1191,6 +1204,7 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
 
                 buf.readUnsignedByte(); // event
 
+                Map<Integer, ByteBuf> photos = getPhotos(channel);
                 ByteBuf photo;
                 if (buf.readUnsignedShort() == 0) {
                     photo = Unpooled.buffer(mediaLength);
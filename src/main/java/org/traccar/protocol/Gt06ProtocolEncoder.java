@@ -17,6 +17,7 @@ package org.traccar.protocol;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
 import org.traccar.BaseProtocolEncoder;
 import org.traccar.Context;
 import org.traccar.helper.Checksum;
@@ -25,6 +26,7 @@ import org.traccar.Protocol;
 
 import java.nio.charset.StandardCharsets;
 
+@ChannelHandler.Sharable
 public class Gt06ProtocolEncoder extends BaseProtocolEncoder {
 
     public Gt06ProtocolEncoder(Protocol protocol) {
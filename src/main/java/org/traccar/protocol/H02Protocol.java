@@ -37,17 +37,21 @@ public class H02Protocol extends BaseProtocol {
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
                 int messageLength = Context.getConfig().getInteger(getName() + ".messageLength");
                 pipeline.addLast(new H02FrameDecoder(messageLength));
-                pipeline.addLast(new StringEncoder());
-                pipeline.addLast(new H02ProtocolEncoder(H02Protocol.this));
-                pipeline.addLast(new H02ProtocolDecoder(H02Protocol.this));
+                pipeline.addLast(getSharedHandler(StringEncoder.class, StringEncoder::new));
+                pipeline.addLast(getSharedHandler(
+                        H02ProtocolEncoder.class, () -> new H02ProtocolEncoder(H02Protocol.this)));
+                pipeline.addLast(getSharedHandler(
+                        H02ProtocolDecoder.class, () -> new H02ProtocolDecoder(H02Protocol.this)));
             }
         });
         addServer(new TrackerServer(true, getName()) {
             @Override
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
-                pipeline.addLast(new StringEncoder());
-                pipeline.addLast(new H02ProtocolEncoder(H02Protocol.this));
-                pipeline.addLast(new H02ProtocolDecoder(H02Protocol.this));
+                pipeline.addLast(getSharedHandler(StringEncoder.class, StringEncoder::new));
+                pipeline.addLast(getSharedHandler(
+                        H02ProtocolEncoder.class, () -> new H02ProtocolEncoder(H02Protocol.this)));
+                pipeline.addLast(getSharedHandler(
+                        H02ProtocolDecoder.class, () -> new H02ProtocolDecoder(H02Protocol.this)));
             }
         });
     }
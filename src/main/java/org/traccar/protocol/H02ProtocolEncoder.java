@@ -16,6 +16,7 @@
  */
 package org.traccar.protocol;
 
+import io.netty.channel.ChannelHandler;
 import org.traccar.Context;
 import org.traccar.StringProtocolEncoder;
 import org.traccar.model.Command;
@@ -23,6 +24,7 @@ import org.traccar.Protocol;
 
 import java.util.Date;
 
+@ChannelHandler.Sharable
 public class H02ProtocolEncoder extends StringProtocolEncoder {
 
     private static final String MARKER = "HQ";
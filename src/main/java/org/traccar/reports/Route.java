@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -27,6 +27,7 @@ import java.util.Date;
 
 import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
+import org.traccar.database.QueryBuilder;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.model.Position;
@@ -39,12 +40,8 @@ public final class Route {
 
     public static Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
                                                   Date from, Date to) throws SQLException {
-        ReportUtils.checkPeriodLimit(from, to);
         ArrayList<Position> result = new ArrayList<>();
-        for (long deviceId : ReportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(Context.getDataManager().getPositions(deviceId, from, to));
-        }
+        getObjects(checkDevices(userId, deviceIds, groupIds, from, to), from, to, result::add);
         //Limited output
 //        ArrayList<Position> temp = new ArrayList<>();
 //        for (int i = 0; i < 70; i++) {
@@ -55,6 +52,28 @@ public final class Route {
         return result;
     }
 
+    /**
+     * Validates the request and returns devices for the streaming report, so that errors are reported before any
+     * output is written.
+     */
+    public static Collection<Long> checkDevices(
+            long userId, Collection<Long> deviceIds, Collection<Long> groupIds, Date from, Date to) {
+        ReportUtils.checkPeriodLimit(from, to);
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId : devices) {
+            Context.getPermissionsManager().checkDevice(userId, deviceId);
+        }
+        return devices;
+    }
+
+    public static <E extends Exception> void getObjects(
+            Collection<Long> devices, Date from, Date to,
+            QueryBuilder.ResultVisitor<Position, E> visitor) throws SQLException, E {
+        for (long deviceId : devices) {
+            Context.getDataManager().getPositions(deviceId, from, to, visitor);
+        }
+    }
+
     public static void getExcel(OutputStream outputStream,
                                 long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
                                 Date from, Date to) throws SQLException, IOException {
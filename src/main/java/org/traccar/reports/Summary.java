@@ -25,9 +25,11 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.TimeZone;
 
 import org.jxls.util.JxlsHelper;
 import org.traccar.Context;
+import org.traccar.database.QueryBuilder;
 import org.traccar.model.Position;
 import org.traccar.reports.model.SummaryReport;
 
@@ -36,81 +38,109 @@ public final class Summary {
     private Summary() {
     }
 
-    private static SummaryReport calculateSummaryResult(long deviceId, Collection<Position> positions) {
-        SummaryReport result = new SummaryReport();
-        result.setDeviceId(deviceId);
-        result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-        if (positions != null && !positions.isEmpty()) {
-            Position firstPosition = null;
-            Position previousPosition = null;
-            double speedSum = 0;
-            for (Position position : positions) {
-                if (firstPosition == null) {
-                    firstPosition = position;
-                }
-                previousPosition = position;
-                speedSum += position.getSpeed();
-                result.setMaxSpeed(position.getSpeed());
-            }
-            boolean ignoreOdometer = Context.getDeviceManager()
-                    .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-            result.setDistance(ReportUtils.calculateDistance(firstPosition, previousPosition, !ignoreOdometer));
-            result.setAverageSpeed(speedSum / positions.size());
-            result.setSpentFuel(ReportUtils.calculateFuel(firstPosition, previousPosition));
-
-            if (firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
-                    && previousPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
-                result.setEngineHours(
-                        previousPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS));
-            }
+    /**
+     * Collects summary values from positions as they are read, keeping only the first and the last position.
+     */
+    private static final class SummaryAccumulator {
 
-            if (!ignoreOdometer
-                    && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
-                    && previousPosition.getDouble(Position.KEY_ODOMETER) != 0) {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_ODOMETER));
-            } else {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+        private Position firstPosition;
+        private Position previousPosition;
+        private double speedSum;
+        private double maxSpeed;
+        private int count;
+
+        public void add(Position position) {
+            if (firstPosition == null) {
+                firstPosition = position;
             }
+            previousPosition = position;
+            speedSum += position.getSpeed();
+            maxSpeed = Math.max(maxSpeed, position.getSpeed());
+            count += 1;
+        }
 
-            result.setStartTime(firstPosition.getFixTime());
-            result.setEndTime(previousPosition.getServerTime());
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        public SummaryReport build(long deviceId, boolean ignoreOdometer) {
+            SummaryReport result = new SummaryReport();
+            result.setDeviceId(deviceId);
+            result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
+            if (count > 0) {
+                result.setMaxSpeed(maxSpeed);
+                result.setDistance(ReportUtils.calculateDistance(firstPosition, previousPosition, !ignoreOdometer));
+                result.setAverageSpeed(speedSum / count);
+                result.setSpentFuel(ReportUtils.calculateFuel(firstPosition, previousPosition));
+
+                if (firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
+                        && previousPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
+                    result.setEngineHours(
+                            previousPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS));
+                }
+
+                if (!ignoreOdometer
+                        && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
+                        && previousPosition.getDouble(Position.KEY_ODOMETER) != 0) {
+                    result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
+                    result.setEndOdometer(previousPosition.getDouble(Position.KEY_ODOMETER));
+                } else {
+                    result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+                    result.setEndOdometer(previousPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+                }
+
+                result.setStartTime(firstPosition.getFixTime());
+                result.setEndTime(previousPosition.getServerTime());
+            }
+            return result;
         }
-        return result;
-    }
 
-    private static int getDay(long userId, Date date) {
-        Calendar calendar = Calendar.getInstance(ReportUtils.getTimezone(userId));
-        calendar.setTime(date);
-        return calendar.get(Calendar.DAY_OF_MONTH);
     }
 
-    private static Collection<SummaryReport> calculateSummaryResults(
-            long userId, long deviceId, Date from, Date to, boolean daily) throws SQLException {
+    interface PositionReader {
+        void read(QueryBuilder.ResultVisitor<Position, RuntimeException> visitor) throws SQLException;
+    }
 
-        ArrayList<Position> positions = new ArrayList<>(Context.getDataManager().getPositions(deviceId, from, to));
+    /**
+     * Builds summaries from positions in fix time order, one for the whole period or one per day in the given time
+     * zone.
+     */
+    static Collection<SummaryReport> calculateSummaryResults(
+            long deviceId, TimeZone timezone, boolean ignoreOdometer, boolean daily,
+            PositionReader reader) throws SQLException {
 
         ArrayList<SummaryReport> results = new ArrayList<>();
-        if (daily && !positions.isEmpty()) {
-            int startIndex = 0;
-            int startDay = getDay(userId, positions.iterator().next().getFixTime());
-            for (int i = 0; i < positions.size(); i++) {
-                int currentDay = getDay(userId, positions.get(i).getFixTime());
-                if (currentDay != startDay) {
-                    results.add(calculateSummaryResult(deviceId, positions.subList(startIndex, i)));
-                    startIndex = i;
-                    startDay = currentDay;
+        SummaryAccumulator[] accumulator = {new SummaryAccumulator()};
+        int[] startDay = new int[1];
+        Calendar calendar = Calendar.getInstance(timezone);
+
+        reader.read(position -> {
+            if (daily) {
+                calendar.setTime(position.getFixTime());
+                int currentDay = calendar.get(Calendar.DAY_OF_MONTH);
+                if (accumulator[0].isEmpty()) {
+                    startDay[0] = currentDay;
+                } else if (currentDay != startDay[0]) {
+                    results.add(accumulator[0].build(deviceId, ignoreOdometer));
+                    accumulator[0] = new SummaryAccumulator();
+                    startDay[0] = currentDay;
                 }
             }
-            results.add(calculateSummaryResult(deviceId, positions.subList(startIndex, positions.size())));
-        } else {
-            results.add(calculateSummaryResult(deviceId, positions));
-        }
+            accumulator[0].add(position);
+        });
+        results.add(accumulator[0].build(deviceId, ignoreOdometer));
 
         return results;
     }
 
+    private static Collection<SummaryReport> calculateSummaryResults(
+            long userId, long deviceId, Date from, Date to, boolean daily) throws SQLException {
+        boolean ignoreOdometer = Context.getDeviceManager()
+                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
+        return calculateSummaryResults(deviceId, ReportUtils.getTimezone(userId), ignoreOdometer, daily,
+                visitor -> Context.getDataManager().getPositions(deviceId, from, to, visitor));
+    }
+
     public static Collection<SummaryReport> getObjects(long userId, Collection<Long> deviceIds,
             Collection<Long> groupIds, Date from, Date to, boolean daily) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
@@ -21,12 +21,17 @@ import java.util.concurrent.ScheduledExecutorService;
 public class ScheduleManager {
 
     private ScheduledExecutorService executor;
+    private ScheduledExecutorService cleanupExecutor;
 
     public void start() {
 
         executor = Executors.newSingleThreadScheduledExecutor();
 
         new TaskDeviceInactivityCheck().schedule(executor);
+        cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
+        new TaskHistoryCleanup().schedule(cleanupExecutor);
+        new TaskPartitionMaintenance().schedule(executor);
+        new TaskMetricsLog().schedule(executor);
 
     }
 
@@ -37,6 +42,11 @@ public class ScheduleManager {
             executor = null;
         }
 
+        if (cleanupExecutor != null) {
+            cleanupExecutor.shutdown();
+            cleanupExecutor = null;
+        }
+
     }
 
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+import org.traccar.helper.DateUtil;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes positions and events older than configured number of days. Rows are deleted in small id ranges with a
+ * pause after each chunk, so cleanup does not hold long locks and runs continuously next to ingestion. Ids grow with
+ * server time, so a pass over a table ends at the first remaining row that is not older than the limit. Cleanup runs
+ * on its own scheduler thread, so slow deletes do not delay other scheduled tasks.
+ */
+public class TaskHistoryCleanup implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskHistoryCleanup.class);
+
+    static final long PASS_PERIOD_MINUTES = 60;
+    private static final long PROGRESS_PERIOD = TimeUnit.MINUTES.toMillis(1);
+    private static final long MINIMUM_DELAY = 10;
+
+    private final DataManager dataManager;
+    private final int chunkSize;
+    private final long pause;
+
+    private ScheduledExecutorService executor;
+
+    private Date timeLimit;
+    private boolean events;
+    private long cursor;
+    private long deleted;
+    private long startTime;
+    private long progressTime;
+
+    public TaskHistoryCleanup() {
+        this(Context.getConfig(), Context.getDataManager());
+    }
+
+    TaskHistoryCleanup(Config config, DataManager dataManager) {
+        this.dataManager = dataManager;
+        chunkSize = config.getInteger(Keys.DATABASE_CLEANUP_CHUNK_SIZE, 10000);
+        pause = config.getLong(Keys.DATABASE_CLEANUP_PAUSE, 1000);
+    }
+
+    public void schedule(ScheduledExecutorService executor) {
+        this.executor = executor;
+        executor.execute(this);
+    }
+
+    @Override
+    public void run() {
+        long delay;
+        try {
+            delay = step();
+        } catch (SQLException error) {
+            LOGGER.warn("History cleanup error", error);
+            timeLimit = null;
+            delay = TimeUnit.MINUTES.toMillis(PASS_PERIOD_MINUTES);
+        }
+        try {
+            executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("History cleanup stopped");
+        }
+    }
+
+    private String getTableName() {
+        return events ? "events" : "positions";
+    }
+
+    private void startTable(boolean events) {
+        this.events = events;
+        cursor = 0;
+        deleted = 0;
+        startTime = System.currentTimeMillis();
+        progressTime = startTime;
+    }
+
+    private double getRate(long currentTime) {
+        return deleted * 1000.0 / Math.max(currentTime - startTime, 1);
+    }
+
+    /**
+     * Deletes one chunk and returns delay until the next one.
+     */
+    long step() throws SQLException {
+        if (timeLimit == null) {
+            timeLimit = dataManager.getHistoryLimit();
+            if (timeLimit == null) {
+                return TimeUnit.MINUTES.toMillis(PASS_PERIOD_MINUTES);
+            }
+            LOGGER.info("Clearing history earlier than " + DateUtil.formatDate(timeLimit, false));
+            dataManager.dropPartitions(timeLimit);
+            startTable(false);
+        }
+
+        long nextId;
+        Date nextTime;
+        if (events) {
+            Event event = dataManager.getNextEvent(cursor);
+            nextId = event != null ? event.getId() : 0;
+            nextTime = event != null ? event.getServerTime() : null;
+        } else {
+            Position position = dataManager.getNextPosition(cursor);
+            nextId = position != null ? position.getId() : 0;
+            nextTime = position != null ? position.getServerTime() : null;
+        }
+
+        long currentTime = System.currentTimeMillis();
+
+        if (nextTime == null || !nextTime.before(timeLimit)) {
+            LOGGER.info(String.format("History cleanup deleted %d %s in %d s (%.1f rows/s)",
+                    deleted, getTableName(), (currentTime - startTime) / 1000, getRate(currentTime)));
+            if (!events) {
+                startTable(true);
+                return Math.max(pause, MINIMUM_DELAY);
+            }
+            timeLimit = null;
+            return TimeUnit.MINUTES.toMillis(PASS_PERIOD_MINUTES);
+        }
+
+        if (currentTime - progressTime >= PROGRESS_PERIOD) {
+            progressTime = currentTime;
+            LOGGER.info(String.format("History cleanup deleted %d %s (%.1f rows/s), remaining backlog %d h",
+                    deleted, getTableName(), getRate(currentTime),
+                    TimeUnit.MILLISECONDS.toHours(timeLimit.getTime() - nextTime.getTime())));
+        }
+
+        cursor = nextId + chunkSize;
+        long count;
+        if (events) {
+            count = dataManager.deleteEvents(nextId, cursor, timeLimit);
+        } else {
+            count = dataManager.deletePositions(nextId, cursor, timeLimit);
+        }
+        deleted += count;
+        if (count == 0) {
+            return MINIMUM_DELAY; // chunks with only latest positions are cheap
+        }
+        return Math.max(pause, MINIMUM_DELAY);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.ApiForwarder;
+import org.traccar.BaseProtocol;
+import org.traccar.Context;
+import org.traccar.DeviceSessionCache;
+import org.traccar.Main;
+import org.traccar.TrackerServer;
+import org.traccar.config.Keys;
+import org.traccar.database.PositionWriter;
+import org.traccar.handler.NetworkMessageHandler;
+import org.traccar.handler.RateLimitHandler;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically logs counters of internal queues, so overload and dropped work are visible without a debugger.
+ */
+public class TaskMetricsLog implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskMetricsLog.class);
+
+    public void schedule(ScheduledExecutorService executor) {
+        long interval = Context.getConfig().getLong(Keys.LOGGER_METRICS_INTERVAL, 300);
+        if (interval > 0) {
+            executor.scheduleAtFixedRate(this, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (Main.getInjector() == null) {
+            return;
+        }
+
+        ApiForwarder apiForwarder = Main.getInjector().getInstance(ApiForwarder.class);
+        if (apiForwarder != null) {
+            LOGGER.info("Api forwarding - queue: {}, forwarded: {}, failed: {}, dropped: {}",
+                    apiForwarder.getQueueSize(), apiForwarder.getForwarded(),
+                    apiForwarder.getFailed(), apiForwarder.getDropped());
+        }
+
+        if (Context.getServerManager() != null) {
+            for (BaseProtocol protocol : Context.getServerManager().getProtocols()) {
+                DeviceSessionCache sessionCache = protocol.getAddressDeviceSessions();
+                if (sessionCache.getHits() + sessionCache.getMisses() > 0) {
+                    LOGGER.info("Session cache {} - size: {}, hits: {}, misses: {}, evictions: {}",
+                            protocol.getName(), sessionCache.size(), sessionCache.getHits(),
+                            sessionCache.getMisses(), sessionCache.getEvictions());
+                }
+                long rateLimited = 0;
+                boolean rateLimit = false;
+                for (TrackerServer server : protocol.getServerList()) {
+                    RateLimitHandler rateLimitHandler = server.getRateLimitHandler();
+                    if (rateLimitHandler != null) {
+                        rateLimit = true;
+                        rateLimited += rateLimitHandler.getDropped();
+                    }
+                }
+                if (rateLimit) {
+                    LOGGER.info("Rate limit {} - dropped: {}", protocol.getName(), rateLimited);
+                }
+            }
+        }
+
+        LOGGER.info("Network - unwritable channels: {}, dropped messages: {}",
+                NetworkMessageHandler.getUnwritableChannels(), NetworkMessageHandler.getDroppedMessages());
+
+        PositionWriter positionWriter = Main.getInjector().getInstance(PositionWriter.class);
+        if (positionWriter != null) {
+            LOGGER.info(String.format(
+                    "Position writer - queue: %d, stored: %d, batches: %d, last batch: %d, "
+                            + "average flush: %.1f ms, last flush: %d ms, overflows: %d",
+                    positionWriter.getQueueSize(), positionWriter.getStoredCount(), positionWriter.getBatchCount(),
+                    positionWriter.getLastBatchSize(), positionWriter.getAverageFlushTime(),
+                    positionWriter.getLastFlushTime(), positionWriter.getOverflowCount()));
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.config.Keys;
+
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates upcoming partitions of positions and events tables. It runs on its own schedule, because a history cleanup
+ * pass over a large table can take longer than the partitions created in advance last.
+ */
+public class TaskPartitionMaintenance implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPartitionMaintenance.class);
+
+    private static final long CHECK_PERIOD_MINUTES = 60;
+
+    public void schedule(ScheduledExecutorService executor) {
+        if (Context.getConfig().hasKey(Keys.DATABASE_PARTITION)) {
+            executor.scheduleAtFixedRate(this, CHECK_PERIOD_MINUTES, CHECK_PERIOD_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            Context.getDataManager().updatePartitions();
+        } catch (SQLException error) {
+            LOGGER.warn("Partition maintenance error", error);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.traccar;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ApiForwarderTest {
+
+    @Test
+    public void testDrop() {
+
+        Config config = new Config();
+        config.setString(Keys.OUTPUT_API, "http://127.0.0.1:1");
+        config.setString(Keys.OUTPUT_API_QUEUE_SIZE, "1");
+        config.setString(Keys.OUTPUT_API_CONCURRENCY, "0");
+        ApiForwarder forwarder = new ApiForwarder(config);
+
+        AtomicReference<Boolean> result = new AtomicReference<>();
+        assertTrue(forwarder.forward("/1", result::set));
+        assertEquals(null, result.get());
+
+        assertFalse(forwarder.forward("/2", result::set));
+        assertEquals(Boolean.FALSE, result.get());
+        assertEquals(1, forwarder.getQueueSize());
+        assertEquals(1, forwarder.getDropped());
+
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+
+        Config config = new Config();
+        config.setString(Keys.OUTPUT_API, "http://127.0.0.1:1");
+        config.setString(Keys.OUTPUT_API_CONCURRENCY, "1");
+        ApiForwarder forwarder = new ApiForwarder(config);
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        assertTrue(forwarder.forward("/1", result::complete));
+        assertFalse(result.get(10, TimeUnit.SECONDS));
+        assertEquals(1, forwarder.getFailed());
+        assertEquals(0, forwarder.getForwarded());
+        assertEquals(0, forwarder.getDropped());
+
+    }
+
+}
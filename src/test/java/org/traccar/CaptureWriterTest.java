@@ -0,0 +1,97 @@
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.helper.DataConverter;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws Exception {
+
+        CaptureWriter writer = new CaptureWriter(folder.getRoot().getPath(), 1024, 0);
+
+        ByteBuf buf = Unpooled.wrappedBuffer(DataConverter.parseHex("78780d01"));
+        buf.readerIndex(4);
+        String reference1 = writer.write("gt06", 1, 1000, buf);
+        String reference2 = writer.write("h02", 2, 2000, "*HQ,123#");
+        assertEquals(4, buf.readerIndex());
+        writer.close();
+
+        CaptureReader.Record record = CaptureReader.read(folder.getRoot(), reference1);
+        assertEquals("gt06", record.getProtocol());
+        assertEquals(1, record.getDeviceId());
+        assertEquals(1000, record.getTime());
+        assertEquals("78780d01", ByteBufUtil.hexDump((ByteBuf) record.getMessage()));
+
+        record = CaptureReader.read(folder.getRoot(), reference2);
+        assertEquals("h02", record.getProtocol());
+        assertEquals("*HQ,123#", record.getMessage());
+
+        File file = new File(folder.getRoot(), reference1.substring(0, reference1.indexOf(':')));
+        CaptureReader reader = new CaptureReader(file);
+        assertEquals(2, reader.find(0, 0, Long.MAX_VALUE).size());
+        assertEquals(1, reader.find(2, 0, Long.MAX_VALUE).size());
+        assertEquals(1, reader.find(0, 0, 2000).size());
+        assertNull(reader.read(1000));
+
+    }
+
+    @Test
+    public void testRotate() throws Exception {
+
+        CaptureWriter writer = new CaptureWriter(folder.getRoot().getPath(), 100, 0);
+
+        String reference1 = writer.write("test", 1, 1000, Unpooled.wrappedBuffer(new byte[60]));
+        String reference2 = writer.write("test", 1, 2000, Unpooled.wrappedBuffer(new byte[60]));
+        assertNull(writer.write("test", 1, 3000, Unpooled.wrappedBuffer(new byte[100])));
+        writer.close();
+
+        assertNotEquals(reference1.substring(0, reference1.indexOf(':')),
+                reference2.substring(0, reference2.indexOf(':')));
+        assertEquals("0", reference2.substring(reference2.indexOf(':') + 1));
+
+        List<CaptureReader.Record> records = new CaptureReader(
+                new File(folder.getRoot(), reference2.substring(0, reference2.indexOf(':')))).find(1, 0, 3000);
+        assertEquals(1, records.size());
+        assertEquals(2000, records.get(0).getTime());
+
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+
+        CaptureWriter writer = new CaptureWriter(folder.getRoot().getPath(), 100, 2);
+
+        String[] references = new String[4];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = writer.write("test", 1, 1000 * (i + 1), Unpooled.wrappedBuffer(new byte[60]));
+        }
+        writer.close();
+
+        assertEquals(4, folder.getRoot().list().length);
+        assertFalse(new File(folder.getRoot(), references[1].substring(0, references[1].indexOf(':'))
+                + CaptureWriter.INDEX_EXTENSION).exists());
+        assertTrue(new File(folder.getRoot(), references[2].substring(0, references[2].indexOf(':'))
+                + CaptureWriter.DATA_EXTENSION).exists());
+        assertEquals(4000, CaptureReader.read(folder.getRoot(), references[3]).getTime());
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.traccar;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceSessionCacheTest {
+
+    @Test
+    public void testMaxSize() {
+
+        DeviceSessionCache cache = new DeviceSessionCache(2, 0);
+
+        InetSocketAddress address1 = new InetSocketAddress("127.0.0.1", 5001);
+        InetSocketAddress address2 = new InetSocketAddress("127.0.0.1", 5002);
+        InetSocketAddress address3 = new InetSocketAddress("127.0.0.1", 5003);
+
+        cache.put(address1, new DeviceSession(1));
+        cache.put(address2, new DeviceSession(2));
+        assertNotNull(cache.get(address1));
+
+        cache.put(address3, new DeviceSession(3));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(address1));
+        assertNull(cache.get(address2));
+        assertNotNull(cache.get(address3));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        DeviceSessionCache cache = new DeviceSessionCache(10, 1);
+
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 5001);
+        cache.put(address, new DeviceSession(1));
+
+        Thread.sleep(10);
+
+        assertNull(cache.get(address));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+
+        DeviceSessionCache cache = new DeviceSessionCache(16 * 1024, 0);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                for (int port = 1; port <= 5000; port++) {
+                    InetSocketAddress address = new InetSocketAddress("127.0.0." + (thread + 1), port);
+                    cache.put(address, new DeviceSession(port));
+                    cache.get(address);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(cache.size() <= 16 * 1024);
+        assertEquals(20000, cache.getHits() + cache.getMisses());
+        assertEquals(20000, cache.size() + cache.getEvictions());
+        assertNotNull(cache.get(new InetSocketAddress("127.0.0.1", 5000)));
+
+    }
+
+}
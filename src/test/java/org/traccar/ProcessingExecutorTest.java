@@ -0,0 +1,51 @@
+package org.traccar;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessingExecutorTest {
+
+    @Test
+    public void testDeviceThreads() throws Exception {
+
+        ProcessingExecutor executor = new ProcessingExecutor(4);
+        assertFalse(executor.inEventLoop());
+
+        Map<Long, Thread> threads = new ConcurrentHashMap<>();
+        Map<Long, Integer> last = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(400);
+        for (int i = 0; i < 100; i++) {
+            for (long deviceId = 1; deviceId <= 4; deviceId++) {
+                long key = deviceId;
+                int index = i;
+                executor.execute(key, () -> {
+                    assertTrue(executor.inEventLoop());
+                    if (threads.putIfAbsent(key, Thread.currentThread()) == null
+                            || threads.get(key) == Thread.currentThread()) {
+                        last.merge(key, index, (previous, current) -> previous + 1 == current ? current : -1);
+                    }
+                    latch.countDown();
+                });
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(4, threads.values().stream().distinct().count());
+        for (long deviceId = 1; deviceId <= 4; deviceId++) {
+            assertEquals(99, (int) last.get(deviceId));
+        }
+
+        executor.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    }
+
+}
@@ -1,20 +1,30 @@
 package org.traccar.database;
 
 import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.model.Attribute;
 import org.traccar.model.Device;
 import org.traccar.model.Driver;
+import org.traccar.model.Event;
 import org.traccar.model.Geofence;
 import org.traccar.model.Group;
 import org.traccar.model.ManagedUser;
 import org.traccar.model.Position;
 import org.traccar.model.User;
 
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Properties;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
-public class DataManagerTest {
+public class DataManagerTest extends BaseTest {
 
     @Test
     public void constructObjectQuery() {
@@ -78,4 +88,65 @@ public class DataManagerTest {
 
     }
 
+    private Config createConfig(String name) throws Exception {
+        Properties defaults = new Properties();
+        try (InputStream inputStream = new FileInputStream("./setup/default.xml")) {
+            defaults.loadFromXML(inputStream);
+        }
+        Config config = new Config();
+        for (String key : defaults.stringPropertyNames()) {
+            config.setString(key, defaults.getProperty(key));
+        }
+        config.setString("database.driver", "org.h2.Driver");
+        config.setString("database.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        config.setString("database.user", "sa");
+        config.setString("database.password", "");
+        return config;
+    }
+
+    private void addHistory(DataManager dataManager, String protocol, Date time) throws Exception {
+        Device device = new Device();
+        device.setName("test");
+        device.setUniqueId("123456789012345");
+        dataManager.addObject(device);
+
+        Position position = new Position(protocol);
+        position.setDeviceId(device.getId());
+        position.setTime(time);
+        dataManager.addObject(position);
+
+        Event event = new Event(protocol, device.getId());
+        event.setServerTime(time);
+        dataManager.addObject(event);
+    }
+
+    @Test
+    public void testReplicaReads() throws Exception {
+
+        Date time = new Date();
+
+        DataManager replica = new DataManager(createConfig("replica"));
+        addHistory(replica, "replica", time);
+
+        Config config = createConfig("primary");
+        config.setString(Keys.DATABASE_REPLICA_URL, "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1");
+        config.setString(Keys.DATABASE_REPLICA_IDLE_TIMEOUT, "20000");
+        DataManager dataManager = new DataManager(config);
+        addHistory(dataManager, "primary", time);
+
+        Date from = new Date(time.getTime() - 1000);
+        Date to = new Date(time.getTime() + 1000);
+
+        Collection<Position> positions = dataManager.getPositions(1, from, to);
+        assertEquals(1, positions.size());
+        assertEquals("replica", positions.iterator().next().getProtocol());
+
+        Collection<Event> events = dataManager.getEvents(1, from, to);
+        assertEquals(1, events.size());
+        assertEquals("replica", events.iterator().next().getType());
+
+        assertEquals("primary", dataManager.getObject(Position.class, 1).getProtocol());
+
+    }
+
 }
@@ -0,0 +1,44 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.DeviceTelemetry;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeviceTelemetryWriterTest {
+
+    private DeviceTelemetry createTelemetry(long fixTime, double latitude) {
+        DeviceTelemetry telemetry = new DeviceTelemetry();
+        telemetry.setDeviceId(1);
+        telemetry.setFixTime(new Date(fixTime));
+        telemetry.setLatitude(latitude);
+        return telemetry;
+    }
+
+    @Test
+    public void testCoalesceNewest() {
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_TELEMETRY_FLUSH_INTERVAL, String.valueOf(Long.MAX_VALUE / 2));
+        DeviceTelemetryWriter writer = new DeviceTelemetryWriter(config, null);
+
+        writer.update(createTelemetry(2000, 2));
+        writer.update(createTelemetry(1000, 1));
+        assertEquals(2, writer.getPending(1).getLatitude(), 0.1);
+
+        writer.update(createTelemetry(2000, 3));
+        assertEquals(3, writer.getPending(1).getLatitude(), 0.1);
+
+        writer.update(createTelemetry(3000, 4));
+        assertEquals(4, writer.getPending(1).getLatitude(), 0.1);
+
+        assertEquals(1, writer.getPendingCount());
+        assertEquals(4, writer.getReceived());
+
+    }
+
+}
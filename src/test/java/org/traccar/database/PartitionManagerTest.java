@@ -0,0 +1,48 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PartitionManagerTest {
+
+    @Test
+    public void testDaily() throws Exception {
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        PartitionManager manager = new PartitionManager(null, PartitionManager.PERIOD_DAILY, 2);
+
+        Date start = manager.getPeriodStart(format.parse("2020-02-29 15:30:00"));
+        assertEquals(format.parse("2020-02-29 00:00:00"), start);
+        assertEquals(format.parse("2020-03-01 00:00:00"), manager.getNextPeriod(start));
+
+        assertEquals("tc_positions_p20200229", manager.getPartitionName("tc_positions", start));
+        assertEquals(start, manager.parsePartitionName("tc_positions", "tc_positions_p20200229"));
+        assertNull(manager.parsePartitionName("tc_positions", "tc_positions_legacy"));
+        assertNull(manager.parsePartitionName("tc_positions", "tc_positions_default"));
+        assertNull(manager.parsePartitionName("tc_positions", "tc_positions_p202002"));
+        assertNull(manager.parsePartitionName("tc_positions", "tc_events_p20200229"));
+
+    }
+
+    @Test
+    public void testMonthly() throws Exception {
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        PartitionManager manager = new PartitionManager(null, PartitionManager.PERIOD_MONTHLY, 2);
+
+        Date start = manager.getPeriodStart(format.parse("2020-12-31 23:59:59"));
+        assertEquals(format.parse("2020-12-01 00:00:00"), start);
+        assertEquals(format.parse("2021-01-01 00:00:00"), manager.getNextPeriod(start));
+
+        assertEquals("tc_events_p202012", manager.getPartitionName("tc_events", start));
+        assertEquals(start, manager.parsePartitionName("tc_events", "tc_events_p202012"));
+        assertNull(manager.parsePartitionName("tc_events", "tc_events_p202013"));
+
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PositionWriterTest extends BaseTest {
+
+    private DataManager createDataManager() throws Exception {
+        Config config = new Config();
+        config.setString("database.driver", "org.h2.Driver");
+        config.setString("database.url", "jdbc:h2:mem:positionwriter;DB_CLOSE_DELAY=-1");
+        config.setString("database.user", "sa");
+        config.setString("database.password", "");
+        config.setString("database.changelog", "./schema/changelog-master.xml");
+        config.setString("database.generateQueries", "true");
+        return new DataManager(config);
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+
+        DataManager dataManager = createDataManager();
+
+        Device device = new Device();
+        device.setName("test");
+        device.setUniqueId("123456789012345");
+        dataManager.addObject(device);
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_INSERT_BATCH_LATENCY, "500");
+        PositionWriter writer = new PositionWriter(config, dataManager);
+
+        List<Position> positions = new ArrayList<>();
+        List<CompletableFuture<Position>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Position position = new Position("test");
+            position.setDeviceId(device.getId());
+            position.setTime(new Date(i * 1000L));
+            position.setLatitude(i);
+            positions.add(position);
+            futures.add(writer.store(position));
+        }
+        for (CompletableFuture<Position> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, writer.getBatchCount());
+        assertEquals(10, writer.getStoredCount());
+        assertEquals(10, writer.getLastBatchSize());
+        assertEquals(0, writer.getOverflowCount());
+
+        Set<Long> ids = new HashSet<>();
+        for (Position position : positions) {
+            assertTrue(position.getId() > 0);
+            ids.add(position.getId());
+            Position stored = dataManager.getObject(Position.class, position.getId());
+            assertEquals(position.getLatitude(), stored.getLatitude(), 0.1);
+        }
+        assertEquals(10, ids.size());
+
+    }
+
+}
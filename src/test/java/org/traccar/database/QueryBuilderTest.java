@@ -0,0 +1,92 @@
+package org.traccar.database;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.model.Device;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryBuilderTest extends BaseTest {
+
+    @Test
+    public void testObjectRoundTrip() throws Exception {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:querybuilder;DB_CLOSE_DELAY=-1");
+
+        QueryBuilder.create(dataSource, "CREATE TABLE devices (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(128), "
+                + "uniqueId VARCHAR(128), lastUpdate TIMESTAMP, groupId INT, disabled BOOLEAN, attributes VARCHAR(4000))")
+                .executeUpdate();
+
+        String insert = "INSERT INTO devices (name, uniqueId, lastUpdate, groupId, disabled, attributes) "
+                + "VALUES (:name, :uniqueId, :lastUpdate, :groupId, :disabled, :attributes)";
+        for (int i = 1; i <= 2; i++) {
+            Device device = new Device();
+            device.setName("device" + i);
+            device.setUniqueId("12345" + i);
+            device.setLastUpdate(new Date(i * 1000));
+            device.setDisabled(i == 2);
+            device.set("key", "value" + i);
+            assertEquals(i, QueryBuilder.create(dataSource, insert, true).setObject(device).executeUpdate());
+        }
+
+        for (int i = 0; i < 2; i++) {
+            Collection<Device> devices = QueryBuilder.create(
+                    dataSource, "SELECT * FROM devices WHERE name = :name OR uniqueId = :name ORDER BY id")
+                    .setString("name", "device2")
+                    .executeQuery(Device.class);
+            assertEquals(1, devices.size());
+            Device device = devices.iterator().next();
+            assertEquals(2, device.getId());
+            assertEquals("123452", device.getUniqueId());
+            assertEquals(2000, device.getLastUpdate().getTime());
+            assertEquals(0, device.getGroupId());
+            assertTrue(device.getDisabled());
+            assertEquals("value2", device.getString("key"));
+            assertNull(device.getPhone());
+        }
+
+        List<String> names = new ArrayList<>();
+        QueryBuilder.create(dataSource, "SELECT * FROM devices ORDER BY id")
+                .setFetchSize(1)
+                .executeQuery(Device.class, device -> names.add(device.getName()));
+        assertEquals(Arrays.asList("device1", "device2"), names);
+
+    }
+
+    @Test
+    public void testBatchGeneratedKeys() throws Exception {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:querybuilderbatch;DB_CLOSE_DELAY=-1");
+
+        QueryBuilder.create(dataSource, "CREATE TABLE items (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(128))")
+                .executeUpdate();
+        QueryBuilder.create(dataSource, "INSERT INTO items (name) VALUES ('existing')").executeUpdate();
+
+        QueryBuilder builder = QueryBuilder.create(dataSource, "INSERT INTO items (name) VALUES (:name)", true);
+        for (int i = 1; i <= 3; i++) {
+            builder.setString("name", "item" + i).addBatch();
+        }
+        List<Long> ids = builder.executeBatchGeneratedKeys();
+        assertEquals(Arrays.asList(2L, 3L, 4L), ids);
+
+        for (int i = 1; i <= 3; i++) {
+            Collection<Device> items = QueryBuilder.create(dataSource, "SELECT * FROM items WHERE id = :id")
+                    .setLong("id", ids.get(i - 1))
+                    .executeQuery(Device.class);
+            assertEquals("item" + i, items.iterator().next().getName());
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.traccar.handler;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.Context;
+import org.traccar.PositionBatch;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BacklogHandlerTest extends BaseTest {
+
+    private Position position(long age) {
+        Position position = new Position();
+        position.setTime(new Date(System.currentTimeMillis() - age));
+        return position;
+    }
+
+    @Test
+    public void testBacklog() {
+
+        Config config = new Config();
+        config.setString(Keys.PROCESSING_BACKLOG_AGE, "600");
+
+        BacklogHandler handler = new BacklogHandler(config, Context.getIdentityManager());
+
+        assertFalse(handler.handlePosition(position(0)).getBacklog());
+        assertTrue(handler.handlePosition(position(3600 * 1000)).getBacklog());
+
+        PositionBatch batch = new PositionBatch(Arrays.asList(position(7200 * 1000), position(3600 * 1000)));
+        handler.handleBatch(batch);
+        assertTrue(batch.getPositions().get(0).getBacklog());
+        assertFalse(batch.getPositions().get(1).getBacklog());
+        assertFalse(batch.isBacklog());
+
+        batch = new PositionBatch(Arrays.asList(position(60 * 1000), position(3600 * 1000), position(0)));
+        handler.handleBatch(batch);
+        assertFalse(batch.getPositions().get(0).getBacklog());
+        assertTrue(batch.getPositions().get(1).getBacklog());
+        assertFalse(batch.getPositions().get(2).getBacklog());
+
+    }
+
+    @Test
+    public void testBacklogBatchPositions() {
+
+        Config config = new Config();
+        config.setString(Keys.PROCESSING_BACKLOG_AGE, "600");
+        config.setString(Keys.DECODER_BATCH_POSITIONS, "true");
+
+        BacklogHandler handler = new BacklogHandler(config, Context.getIdentityManager());
+
+        assertFalse(handler.handlePosition(position(3600 * 1000)).getBacklog());
+
+    }
+
+    @Test
+    public void testMixedBatch() {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new SpeedLimitHandler(
+                (latitude, longitude, callback) -> callback.onSuccess(50)));
+
+        Position first = position(7200 * 1000);
+        first.setBacklog(true);
+        Position second = position(3600 * 1000);
+        second.setBacklog(true);
+        Position live = position(0);
+        channel.writeInbound(new PositionBatch(Arrays.asList(first, second, live)));
+
+        PositionBatch backlog = channel.readInbound();
+        assertEquals(Arrays.asList(first, second), backlog.getPositions());
+        assertFalse(first.getAttributes().containsKey(Position.KEY_SPEED_LIMIT));
+        Position position = channel.readInbound();
+        assertSame(live, position);
+        assertTrue(live.getAttributes().containsKey(Position.KEY_SPEED_LIMIT));
+        assertNull(channel.readInbound());
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.ProcessingExecutor;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+import org.traccar.database.PositionWriter;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultDataHandlerTest extends BaseTest {
+
+    private static class RecordHandler extends ChannelInboundHandlerAdapter {
+
+        private final Map<Long, Long> lastIds = new ConcurrentHashMap<>();
+        private final CountDownLatch received;
+        private volatile boolean inactive;
+        private volatile boolean invalid;
+
+        RecordHandler(CountDownLatch received) {
+            this.received = received;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            Position position = (Position) msg;
+            Long lastId = lastIds.put(position.getDeviceId(), position.getId());
+            if (inactive || position.getId() == 0 || lastId != null && lastId > position.getId()) {
+                invalid = true;
+            }
+            received.countDown();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            inactive = true;
+        }
+
+    }
+
+    private DataManager createDataManager() throws Exception {
+        Config config = new Config();
+        config.setString("database.driver", "org.h2.Driver");
+        config.setString("database.url", "jdbc:h2:mem:defaultdatahandler;DB_CLOSE_DELAY=-1");
+        config.setString("database.user", "sa");
+        config.setString("database.password", "");
+        config.setString("database.changelog", "./schema/changelog-master.xml");
+        config.setString("database.generateQueries", "true");
+        return new DataManager(config);
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception {
+
+        DataManager dataManager = createDataManager();
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Device device = new Device();
+            device.setName("test" + i);
+            device.setUniqueId("12345678901234" + i);
+            dataManager.addObject(device);
+            devices.add(device);
+        }
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_INSERT_BATCH_LATENCY, "200");
+        PositionWriter writer = new PositionWriter(config, dataManager);
+
+        ProcessingExecutor executor = new ProcessingExecutor(2);
+        int count = 200;
+        CountDownLatch received = new CountDownLatch(count);
+        RecordHandler recordHandler = new RecordHandler(received);
+
+        EmbeddedChannel channel = new EmbeddedChannel(false, false);
+        EventExecutor channelExecutor = executor.channelExecutor(channel);
+        channel.pipeline().addLast(new ProcessingDispatchHandler(executor));
+        channel.pipeline().addLast(channelExecutor, new DefaultDataHandler(writer));
+        channel.pipeline().addLast(channelExecutor, recordHandler);
+        channel.register();
+
+        for (int i = 0; i < count; i++) {
+            Position position = new Position("test");
+            position.setDeviceId(devices.get(i % devices.size()).getId());
+            position.setTime(new Date(i * 1000L));
+            channel.pipeline().fireChannelRead(position);
+        }
+        channel.close();
+
+        // waiting for each commit would take at least count / threads * latency
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertFalse(recordHandler.invalid);
+
+        executor.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    }
+
+}
@@ -1,10 +1,16 @@
 package org.traccar.handler;
 
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Test;
+import org.traccar.PositionBatch;
 import org.traccar.config.Config;
 import org.traccar.model.Position;
 
+import java.util.Arrays;
+import java.util.Date;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class DistanceHandlerTest {
 
@@ -27,4 +33,27 @@ public class DistanceHandlerTest {
 
     }
 
+    @Test
+    public void testCalculateDistanceBatch() {
+
+        DistanceHandler distanceHandler = new DistanceHandler(new Config(), null);
+
+        Position position1 = new Position();
+        position1.setTime(new Date(1000));
+        position1.set(Position.KEY_DISTANCE, 100);
+
+        Position position2 = new Position();
+        position2.setTime(new Date(2000));
+        position2.set(Position.KEY_DISTANCE, 50);
+
+        PositionBatch batch = new PositionBatch(Arrays.asList(position1, position2));
+        EmbeddedChannel channel = new EmbeddedChannel(distanceHandler);
+        channel.writeInbound(batch);
+
+        assertSame(batch, channel.readInbound());
+        assertEquals(100.0, position1.getAttributes().get(Position.KEY_TOTAL_DISTANCE));
+        assertEquals(150.0, position2.getAttributes().get(Position.KEY_TOTAL_DISTANCE));
+
+    }
+
 }
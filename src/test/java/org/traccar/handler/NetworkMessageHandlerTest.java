@@ -0,0 +1,46 @@
+package org.traccar.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.NetworkMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkMessageHandlerTest {
+
+    @Test
+    public void testDropUnwritable() {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NetworkMessageHandler(true));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(4, 8));
+
+        channel.write(new NetworkMessage(Unpooled.wrappedBuffer(new byte[16]), channel.remoteAddress()));
+        assertFalse(channel.isWritable());
+        assertEquals(1, NetworkMessageHandler.getUnwritableChannels());
+
+        ChannelFuture future = channel.write(
+                new NetworkMessage(Unpooled.wrappedBuffer(new byte[16]), channel.remoteAddress()));
+        assertFalse(future.isSuccess());
+        assertEquals(1, NetworkMessageHandler.getDroppedMessages());
+
+        channel.write(new NetworkMessage(Unpooled.wrappedBuffer(new byte[16]), channel.remoteAddress()),
+                channel.voidPromise());
+        channel.checkException();
+        assertTrue(channel.isOpen());
+        assertEquals(2, NetworkMessageHandler.getDroppedMessages());
+
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertEquals(0, NetworkMessageHandler.getUnwritableChannels());
+        assertEquals(1, channel.outboundMessages().size());
+
+        channel.finishAndReleaseAll();
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+import org.traccar.ProcessingExecutor;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessingDispatchHandlerTest {
+
+    @ChannelHandler.Sharable
+    private static class AsyncHandler extends ChannelInboundHandlerAdapter {
+
+        private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            Position position = (Position) msg;
+            Runnable resume = ProcessingExecutor.suspend(ctx, position);
+            if (position.getId() % 2 == 0) {
+                executor.execute(resume);
+            } else {
+                resume.run();
+            }
+        }
+
+    }
+
+    private static class LifecycleHandler extends ChannelInboundHandlerAdapter {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch removed;
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile boolean inactive;
+        private volatile boolean lateRead;
+
+        LifecycleHandler(CountDownLatch removed) {
+            this.removed = removed;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            events.add("active");
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (inactive) {
+                lateRead = true;
+            }
+            reads.incrementAndGet();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            inactive = true;
+            events.add(ctx.pipeline().get(ProcessingDispatchHandler.class) != null ? "inactive" : "inactive late");
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            events.add("removed");
+            removed.countDown();
+        }
+
+    }
+
+    @Test
+    public void testCloseUnderLoad() throws Exception {
+
+        ProcessingExecutor executor = new ProcessingExecutor(4);
+        ProcessingDispatchHandler dispatchHandler = new ProcessingDispatchHandler(executor);
+        AsyncHandler asyncHandler = new AsyncHandler();
+
+        int count = 20;
+        CountDownLatch removed = new CountDownLatch(count);
+        List<EmbeddedChannel> channels = new ArrayList<>();
+        List<LifecycleHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            EmbeddedChannel channel = new EmbeddedChannel(false, false);
+            LifecycleHandler handler = new LifecycleHandler(removed);
+            EventExecutor channelExecutor = executor.channelExecutor(channel);
+            channel.pipeline().addLast(dispatchHandler);
+            channel.pipeline().addLast(channelExecutor, asyncHandler);
+            channel.pipeline().addLast(channelExecutor, handler);
+            channels.add(channel);
+            handlers.add(handler);
+        }
+
+        for (EmbeddedChannel channel : channels) {
+            channel.register();
+        }
+        for (int i = 0; i < 20000; i++) {
+            Position position = new Position();
+            position.setId(i);
+            position.setDeviceId(i % 8);
+            channels.get(i % count).pipeline().fireChannelRead(position);
+        }
+        for (EmbeddedChannel channel : channels) {
+            channel.close();
+        }
+
+        assertTrue(removed.await(10, TimeUnit.SECONDS));
+        for (LifecycleHandler handler : handlers) {
+            assertEquals(Arrays.asList("active", "inactive", "removed"), handler.events);
+            assertEquals(20000 / count, handler.reads.get());
+            assertFalse(handler.lateRead);
+        }
+
+        executor.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    }
+
+    private static class SerialHandler extends ChannelInboundHandlerAdapter {
+
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile boolean concurrent;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (active.incrementAndGet() > 1) {
+                concurrent = true;
+            }
+            Thread.yield();
+            active.decrementAndGet();
+            ctx.fireChannelRead(msg);
+        }
+
+    }
+
+    @ChannelHandler.Sharable
+    private static class OrderHandler extends ChannelInboundHandlerAdapter {
+
+        private final Map<Long, Long> lastIds = new ConcurrentHashMap<>();
+        private final CountDownLatch received;
+        private volatile boolean unordered;
+
+        OrderHandler(CountDownLatch received) {
+            this.received = received;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            Position position = (Position) msg;
+            Long lastId = lastIds.put(position.getDeviceId(), position.getId());
+            if (lastId != null && lastId > position.getId()) {
+                unordered = true;
+            }
+            received.countDown();
+        }
+
+    }
+
+    @Test
+    public void testSerialHandler() throws Exception {
+
+        ProcessingExecutor executor = new ProcessingExecutor(4);
+
+        int count = 20000;
+        CountDownLatch received = new CountDownLatch(count);
+        SerialHandler serialHandler = new SerialHandler();
+        OrderHandler orderHandler = new OrderHandler(received);
+
+        EmbeddedChannel channel = new EmbeddedChannel(false, false);
+        EventExecutor channelExecutor = executor.channelExecutor(channel);
+        channel.pipeline().addLast(new ProcessingDispatchHandler(executor));
+        channel.pipeline().addLast(channelExecutor, new AsyncHandler());
+        channel.pipeline().addLast(executor.serialExecutor(channel), serialHandler);
+        channel.pipeline().addLast(channelExecutor, orderHandler);
+        channel.register();
+
+        for (int i = 0; i < count; i++) {
+            Position position = new Position();
+            position.setId(i);
+            position.setDeviceId(i % 16);
+            channel.pipeline().fireChannelRead(position);
+        }
+
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        assertFalse(serialHandler.concurrent);
+        assertFalse(orderHandler.unordered);
+
+        channel.close();
+        executor.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    }
+
+}
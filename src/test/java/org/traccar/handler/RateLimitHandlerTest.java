@@ -0,0 +1,72 @@
+package org.traccar.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimitHandlerTest {
+
+    private DatagramPacket packet(int port) {
+        return new DatagramPacket(
+                Unpooled.wrappedBuffer(new byte[] {1}),
+                new InetSocketAddress("127.0.0.1", 5000), new InetSocketAddress("127.0.0.1", port));
+    }
+
+    @Test
+    public void testDatagram() {
+
+        RateLimitHandler handler = new RateLimitHandler(0.001, 2, false);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.writeInbound(packet(1000), packet(1000), packet(1000), packet(2000));
+
+        assertEquals(1000, ((DatagramPacket) channel.readInbound()).sender().getPort());
+        assertEquals(1000, ((DatagramPacket) channel.readInbound()).sender().getPort());
+        assertEquals(2000, ((DatagramPacket) channel.readInbound()).sender().getPort());
+        assertNull(channel.readInbound());
+        assertEquals(1, handler.getDropped());
+
+        channel.finishAndReleaseAll();
+
+    }
+
+    @Test
+    public void testStream() {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new RateLimitHandler(0.001, 1, false));
+
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] {1}));
+        assertTrue(channel.config().isAutoRead());
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] {2}));
+        assertFalse(channel.config().isAutoRead());
+
+        assertNotNull(channel.readInbound());
+        assertNotNull(channel.readInbound());
+
+        channel.finishAndReleaseAll();
+
+    }
+
+    @Test
+    public void testClose() {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new RateLimitHandler(0.001, 1, true));
+
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] {1}));
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] {2}));
+        assertFalse(channel.isOpen());
+
+        channel.finishAndReleaseAll();
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.traccar.helper;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParserTest {
+
+    private static final Pattern PATTERN = Pattern.compile("([^,]*),([^,]*),([^,]*),([^,]*)");
+
+    private Parser parse(String input) {
+        Parser parser = new Parser(PATTERN, input);
+        assertTrue(parser.matches());
+        return parser;
+    }
+
+    @Test
+    public void testNumbers() {
+
+        Parser parser = parse("-123,+7f,1011,");
+        assertEquals(-123, (int) parser.nextInt());
+        assertEquals(127, (int) parser.nextHexInt());
+        assertEquals(11, (int) parser.nextBinInt());
+        assertNull(parser.nextInt());
+
+        parser = parse("9223372036854775807,ffffffffff,-0,x");
+        assertEquals(Long.MAX_VALUE, (long) parser.nextLong());
+        assertEquals(0xffffffffffL, (long) parser.nextHexLong());
+        assertEquals(0, parser.nextInt(1));
+        assertTrue(parser.hasNext());
+
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIntegerOverflow() {
+        parse("2147483648,,,").nextInt();
+    }
+
+    @Test
+    public void testDecimals() {
+
+        Parser parser = parse("-12.345678,.5,0.1234567890123456789,1e3");
+        assertEquals(Double.parseDouble("-12.345678"), parser.nextDouble(), 0);
+        assertEquals(0.5, parser.nextDouble(), 0);
+        assertEquals(Double.parseDouble("0.1234567890123456789"), parser.nextDouble(), 0);
+        assertEquals(1000.0, parser.nextDouble(), 0);
+
+        parser = parse("-51,5020566,,");
+        assertEquals(Double.parseDouble("-51.5020566"), parser.nextCoordinate(Parser.CoordinateFormat.DEG_DEG), 0);
+
+    }
+
+}
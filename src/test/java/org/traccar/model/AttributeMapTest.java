@@ -0,0 +1,107 @@
+package org.traccar.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeMapTest {
+
+    @Test
+    public void testValues() {
+
+        Position position = new Position();
+        position.set(Position.KEY_SATELLITES, (short) 7);
+        position.set(Position.KEY_ODOMETER, 5000000000L);
+        position.set(Position.KEY_POWER, 12.5f);
+        position.set(Position.KEY_IGNITION, true);
+        position.set("io" + 1, "value");
+
+        Map<String, Object> attributes = position.getAttributes();
+        assertEquals(7, attributes.get(Position.KEY_SATELLITES));
+        assertEquals(5000000000L, attributes.get(Position.KEY_ODOMETER));
+        assertEquals(12.5, attributes.get(Position.KEY_POWER));
+        assertEquals(true, attributes.get(Position.KEY_IGNITION));
+        assertEquals("value", attributes.get("io1"));
+
+        assertEquals(12, position.getInteger(Position.KEY_POWER));
+        assertEquals(7.0, position.getDouble(Position.KEY_SATELLITES), 0);
+        assertTrue(position.getBoolean(Position.KEY_IGNITION));
+        assertEquals(0, position.getLong(Position.KEY_HOURS));
+
+    }
+
+    @Test
+    public void testMap() throws Exception {
+
+        AttributeMap attributes = new AttributeMap();
+        attributes.putInteger("a", 1);
+        attributes.put("b", "2");
+        attributes.putDouble("c", 3.5);
+        attributes.putInteger("a", 4);
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", 4);
+        expected.put("b", "2");
+        expected.put("c", 3.5);
+        assertEquals(expected, attributes);
+        assertEquals(expected.hashCode(), attributes.hashCode());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals("{\"a\":4,\"b\":\"2\",\"c\":3.5}", objectMapper.writeValueAsString(attributes));
+
+        assertEquals("2", attributes.remove("b"));
+        assertNull(attributes.remove("b"));
+
+        Iterator<Map.Entry<String, Object>> iterator = attributes.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        assertFalse(attributes.containsKey("a"));
+        assertEquals(1, attributes.size());
+        assertEquals(3.5, attributes.get("c"));
+
+    }
+
+    @Test
+    public void testLargeMap() {
+
+        AttributeMap attributes = new AttributeMap();
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            attributes.putInteger("io" + i, i);
+            expected.put("io" + i, i);
+        }
+        assertEquals(expected, attributes);
+        assertEquals(42, attributes.getInteger(new String("io42")));
+
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(i, attributes.remove("io" + i));
+            expected.remove("io" + i);
+        }
+        assertEquals(expected, attributes);
+        assertEquals(expected.keySet().iterator().next(), attributes.keySet().iterator().next());
+        assertFalse(attributes.containsKey("io42"));
+        assertEquals(43, attributes.get("io43"));
+
+        Iterator<Map.Entry<String, Object>> iterator = attributes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey().length() == 4) {
+                iterator.remove();
+            }
+        }
+        assertEquals(5, attributes.size());
+        assertEquals(7, attributes.get("io7"));
+        attributes.putInteger("io7", 8);
+        assertEquals(8, attributes.get("io7"));
+        assertEquals(5, attributes.size());
+
+    }
+
+}
@@ -1,9 +1,13 @@
 package org.traccar.protocol;
 
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Test;
 import org.traccar.ProtocolTest;
 import org.traccar.model.Position;
 
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
 public class H02ProtocolDecoderTest extends ProtocolTest {
 
     @Test
@@ -276,4 +280,19 @@ public class H02ProtocolDecoderTest extends ProtocolTest {
 
     }
 
+    @Test
+    public void testSharedDecoder() throws Exception {
+
+        H02ProtocolDecoder decoder = new H02ProtocolDecoder(null);
+        EmbeddedChannel first = new EmbeddedChannel();
+        EmbeddedChannel second = new EmbeddedChannel();
+
+        assertNotNull(decoder.decode(first, null, buffer(
+                "*HQ,865205035331981,V1,132926,A,1935.3933,N,07920.4134,E,  3.34,342,280519,FFFFFFFF#")));
+
+        assertNotNull(decoder.findDeviceSession(first, null));
+        assertNull(decoder.findDeviceSession(second, null));
+
+    }
+
 }
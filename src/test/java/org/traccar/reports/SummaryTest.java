@@ -0,0 +1,133 @@
+package org.traccar.reports;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.model.Position;
+import org.traccar.reports.model.SummaryReport;
+
+import java.sql.SQLException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SummaryTest extends BaseTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private Date date(String time) throws ParseException {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        dateFormat.setTimeZone(UTC);
+        return dateFormat.parse(time);
+    }
+
+    private Position position(String time, double speed, double totalDistance) throws ParseException {
+
+        Position position = new Position();
+
+        position.setTime(date(time));
+        position.setServerTime(date(time));
+        position.setValid(true);
+        position.setSpeed(speed);
+        position.set(Position.KEY_TOTAL_DISTANCE, totalDistance);
+
+        return position;
+    }
+
+    private List<SummaryReport> calculate(
+            List<Position> data, TimeZone timezone, boolean daily) throws SQLException {
+        Collection<SummaryReport> result = Summary.calculateSummaryResults(
+                1, timezone, false, daily, visitor -> data.forEach(visitor::visit));
+        return new ArrayList<>(result);
+    }
+
+    @Test
+    public void testDailySplit() throws Exception {
+
+        List<Position> data = Arrays.asList(
+                position("2016-01-01 22:00:00.000", 10, 0),
+                position("2016-01-01 23:00:00.000", 30, 1000),
+                position("2016-01-01 23:59:59.000", 20, 2000),
+                position("2016-01-02 00:00:00.000", 40, 2500),
+                position("2016-01-02 01:00:00.000", 0, 4000),
+                position("2016-01-04 12:00:00.000", 50, 6000));
+
+        List<SummaryReport> result = calculate(data, UTC, true);
+
+        assertEquals(3, result.size());
+
+        SummaryReport first = result.get(0);
+        assertEquals(2000, first.getDistance(), 0.1);
+        assertEquals(30, first.getMaxSpeed(), 0.1);
+        assertEquals(20, first.getAverageSpeed(), 0.1);
+        assertEquals(date("2016-01-01 22:00:00.000"), first.getStartTime());
+        assertEquals(date("2016-01-01 23:59:59.000"), first.getEndTime());
+
+        SummaryReport second = result.get(1);
+        assertEquals(1500, second.getDistance(), 0.1);
+        assertEquals(40, second.getMaxSpeed(), 0.1);
+        assertEquals(date("2016-01-02 00:00:00.000"), second.getStartTime());
+        assertEquals(date("2016-01-02 01:00:00.000"), second.getEndTime());
+
+        SummaryReport third = result.get(2);
+        assertEquals(0, third.getDistance(), 0.1);
+        assertEquals(date("2016-01-04 12:00:00.000"), third.getStartTime());
+
+    }
+
+    @Test
+    public void testDailySplitTimezone() throws Exception {
+
+        List<Position> data = Arrays.asList(
+                position("2016-01-01 22:00:00.000", 10, 0),
+                position("2016-01-01 23:00:00.000", 30, 1000),
+                position("2016-01-02 00:00:00.000", 40, 2500),
+                position("2016-01-02 01:00:00.000", 0, 4000));
+
+        List<SummaryReport> result = calculate(data, TimeZone.getTimeZone("GMT+1"), true);
+
+        assertEquals(2, result.size());
+        assertEquals(date("2016-01-01 22:00:00.000"), result.get(0).getStartTime());
+        assertEquals(date("2016-01-01 22:00:00.000"), result.get(0).getEndTime());
+        assertEquals(date("2016-01-01 23:00:00.000"), result.get(1).getStartTime());
+        assertEquals(3000, result.get(1).getDistance(), 0.1);
+
+    }
+
+    @Test
+    public void testWholePeriod() throws Exception {
+
+        List<Position> data = Arrays.asList(
+                position("2016-01-01 22:00:00.000", 10, 0),
+                position("2016-01-02 01:00:00.000", 20, 4000),
+                position("2016-01-04 12:00:00.000", 30, 6000));
+
+        List<SummaryReport> result = calculate(data, UTC, false);
+
+        assertEquals(1, result.size());
+        assertEquals(6000, result.get(0).getDistance(), 0.1);
+        assertEquals(20, result.get(0).getAverageSpeed(), 0.1);
+        assertEquals(date("2016-01-04 12:00:00.000"), result.get(0).getEndTime());
+
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        List<SummaryReport> result = calculate(Collections.emptyList(), UTC, true);
+
+        assertEquals(1, result.size());
+        assertNull(result.get(0).getStartTime());
+
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.traccar.schedule;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+import org.traccar.model.Device;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskHistoryCleanupTest extends BaseTest {
+
+    private DataManager createDataManager(String name, Properties overrides) throws Exception {
+        Properties defaults = new Properties();
+        try (InputStream inputStream = new FileInputStream("./setup/default.xml")) {
+            defaults.loadFromXML(inputStream);
+        }
+        Config config = new Config();
+        for (String key : defaults.stringPropertyNames()) {
+            config.setString(key, defaults.getProperty(key));
+        }
+        config.setString("database.driver", "org.h2.Driver");
+        for (String key : overrides.stringPropertyNames()) {
+            config.setString(key, overrides.getProperty(key));
+        }
+        config.setString("database.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        config.setString("database.user", "sa");
+        config.setString("database.password", "");
+        config.setString("database.changelog", "./schema/changelog-master.xml");
+        config.setString("database.generateQueries", "true");
+        config.setString("database.historyDays", "1");
+        return new DataManager(config);
+    }
+
+    private Position addPosition(DataManager dataManager, long deviceId, Date time) throws Exception {
+        Position position = new Position("test");
+        position.setDeviceId(deviceId);
+        position.setTime(time);
+        position.setServerTime(time);
+        dataManager.addObject(position);
+        return position;
+    }
+
+    private Event addEvent(DataManager dataManager, long deviceId, Date time) throws Exception {
+        Event event = new Event(Event.TYPE_DEVICE_MOVING, deviceId);
+        event.setServerTime(time);
+        dataManager.addObject(event);
+        return event;
+    }
+
+    @Test
+    public void testCleanup() throws Exception {
+
+        DataManager dataManager = createDataManager("historycleanup", new Properties());
+
+        Device device = new Device();
+        device.setName("test");
+        device.setUniqueId("123456789012345");
+        dataManager.addObject(device);
+
+        Date oldTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2));
+        Date newTime = new Date();
+
+        List<Position> oldPositions = new ArrayList<>();
+        List<Event> oldEvents = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            oldPositions.add(addPosition(dataManager, device.getId(), oldTime));
+            oldEvents.add(addEvent(dataManager, device.getId(), oldTime));
+        }
+        Position latestPosition = oldPositions.get(4);
+        dataManager.updateLatestPosition(latestPosition);
+        Position newPosition = addPosition(dataManager, device.getId(), newTime);
+        Position lateOldPosition = addPosition(dataManager, device.getId(), oldTime);
+        Event newEvent = addEvent(dataManager, device.getId(), newTime);
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_CLEANUP_CHUNK_SIZE, "2");
+        config.setString(Keys.DATABASE_CLEANUP_PAUSE, "0");
+        TaskHistoryCleanup task = new TaskHistoryCleanup(config, dataManager);
+
+        long passPeriod = TimeUnit.MINUTES.toMillis(TaskHistoryCleanup.PASS_PERIOD_MINUTES);
+        int steps = 1;
+        while (task.step() != passPeriod) {
+            steps += 1;
+            assertTrue(steps < 100);
+        }
+
+        for (Position position : oldPositions) {
+            if (position != latestPosition) {
+                assertNull(dataManager.getObject(Position.class, position.getId()));
+            }
+        }
+        for (Event event : oldEvents) {
+            assertNull(dataManager.getObject(Event.class, event.getId()));
+        }
+        assertNotNull(dataManager.getObject(Position.class, latestPosition.getId()));
+        assertNotNull(dataManager.getObject(Position.class, newPosition.getId()));
+        assertNull(dataManager.getObject(Position.class, lateOldPosition.getId()));
+        assertNotNull(dataManager.getObject(Event.class, newEvent.getId()));
+
+    }
+
+    @Test
+    public void testLegacyQueries() throws Exception {
+
+        Properties overrides = new Properties();
+        overrides.setProperty("database.deletePositions", "DELETE FROM tc_positions WHERE serverTime < :serverTime"
+                + " AND id NOT IN (SELECT positionId FROM tc_devices WHERE positionId IS NOT NULL)");
+        overrides.setProperty("database.deleteEvents", "DELETE FROM tc_events WHERE serverTime < :serverTime");
+        DataManager dataManager = createDataManager("historycleanuplegacy", overrides);
+
+        Device device = new Device();
+        device.setName("test");
+        device.setUniqueId("123456789012345");
+        dataManager.addObject(device);
+
+        Date oldTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2));
+        List<Position> oldPositions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            oldPositions.add(addPosition(dataManager, device.getId(), oldTime));
+        }
+        Event oldEvent = addEvent(dataManager, device.getId(), oldTime);
+        Position newPosition = addPosition(dataManager, device.getId(), new Date());
+
+        Config config = new Config();
+        config.setString(Keys.DATABASE_CLEANUP_CHUNK_SIZE, "2");
+        TaskHistoryCleanup task = new TaskHistoryCleanup(config, dataManager);
+
+        long passPeriod = TimeUnit.MINUTES.toMillis(TaskHistoryCleanup.PASS_PERIOD_MINUTES);
+        int steps = 1;
+        while (task.step() != passPeriod) {
+            steps += 1;
+            assertTrue(steps < 100);
+        }
+
+        for (Position position : oldPositions) {
+            assertNull(dataManager.getObject(Position.class, position.getId()));
+        }
+        assertNull(dataManager.getObject(Event.class, oldEvent.getId()));
+        assertNotNull(dataManager.getObject(Position.class, newPosition.getId()));
+
+    }
+
+}